@@ -0,0 +1,86 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
+import android.arch.persistence.room.testing.MigrationTestHelper;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/*Every Migration against the schemas Room exported into app/schemas(they are the test assets,
+* see build.gradle). MigrationTestHelper makes the old version exactly like the JSON says, runs
+* the Migration and checks the result against the JSON of the new version.*/
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(InstrumentationRegistry.getInstrumentation(),
+            WordRoomDatabase.class.getCanonicalName(), new FrameworkSQLiteOpenHelperFactory());
+
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutdown() {
+        background.shutdownNow();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migrate1To2KeepsTheWords() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 1);
+        db.execSQL("INSERT INTO word_table (word) VALUES ('hello')");
+        db.execSQL("INSERT INTO word_table (word) VALUES ('world')");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 2, true, WordRoomDatabase.MIGRATION_1_2);
+
+        Cursor cursor = db.query("SELECT word, created_at, frequency FROM word_table ORDER BY word");
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals("hello", cursor.getString(0));
+            //Filled later by WordBackfill, the Migration itself doesn't touch the rows.
+            assertEquals(0, cursor.getLong(1));
+            assertEquals(0, cursor.getInt(2));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    //All Migrations together, the way the App opens the file, and the FTS index built on top.
+    @Test
+    public void appOpensMigratedDatabase() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 1);
+        db.execSQL("INSERT INTO word_table (word) VALUES ('hello')");
+        db.close();
+
+        final WordRoomDatabase database = WordRoomDatabase.open(InstrumentationRegistry.getTargetContext(),
+                TEST_DB, new WordRoomDatabase.Config());
+        helper.closeWhenFinished(database);
+        List<Word> found = background.submit(new Callable<List<Word>>() {
+            @Override
+            public List<Word> call() {
+                return database.wordDao().search("hel", 10);
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, found.size());
+        assertEquals("hello", found.get(0).getWord());
+    }
+}
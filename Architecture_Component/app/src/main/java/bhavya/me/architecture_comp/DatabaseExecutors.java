@@ -0,0 +1,231 @@
+package bhavya.me.architecture_comp;
+
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*Threads which are only used for our Database(WordRoomDatabase).
+*
+* -> Earlier every insert made a new AsyncTask, and all AsyncTasks of the whole app run one by
+* one on the same global serial executor. So our insert had to wait behind any other AsyncTask
+* of any other feature, and we allocated a whole AsyncTask object for every word.
+*
+* -> Now we have:
+*       writer: ONE Thread for all the writes. SQLite allows only one writer at a time anyway,
+*       so more Threads would only wait for each other, and with one Thread the writes also
+*       happen in the same order as they were given.
+*
+*       reader: a small pool of Threads for queries which we run by ourselves(not the LiveData
+*       ones, Room runs those on its own executor).
+*
+* -> Both have a capacity(WRITE_QUEUE_CAPACITY, READ_QUEUE_CAPACITY), so if something floods
+* the Database with work the Queue doesn't grow forever. What happens when it is full is
+* decided by who calls execute():
+*
+*       any other Thread: execute() BLOCKS till there is room again. That is back-pressure, a
+*       background loop which writes faster than SQLite can just slows down to its speed, and
+*       the order of the writes is kept.
+*
+*       the main Thread: never blocks(that would freeze the UI and end in an ANR), the task is
+*       queued anyway, past the capacity. insert() of WordRepository and the paging loads come
+*       from here, they are few and small.
+*
+*       a Thread of the same executor: never blocks either, it would wait for itself forever.
+*       WordBackfill and WordImport give themselves to the writer again after every chunk, that
+*       is one task at a time, so it is also queued past the capacity.
+*
+* So execute() never throws RejectedExecutionException while the Database is open and nobody
+* has to handle it. Only shutdown(), called by WordRoomDatabase.close(), stops the Threads, after
+* that execute() throws. getOverflowCount() and getBlockedCount() tell how often the capacity
+* was hit, together with the Queue depths we can see how much work is waiting.*/
+public class DatabaseExecutors {
+
+    private static final int WRITE_QUEUE_CAPACITY = 256;
+    private static final int READ_THREADS = 2;
+    private static final int READ_QUEUE_CAPACITY = 64;
+
+    private final BoundedExecutor writer;
+    //null if a custom query Executor was given, then customReader is used instead.
+    private final BoundedExecutor reader;
+    private final Executor customReader;
+
+    public DatabaseExecutors() {
+        this(READ_THREADS);
+    }
+
+    public DatabaseExecutors(int readThreads) {
+        this(readThreads, null);
+    }
+
+    //With a customReader no read pool is made, and the read queue depths are always 0.
+    public DatabaseExecutors(int readThreads, Executor customReader) {
+        writer = new BoundedExecutor("word-db-write", 1, WRITE_QUEUE_CAPACITY);
+        reader = customReader == null
+                ? new BoundedExecutor("word-db-read", readThreads, READ_QUEUE_CAPACITY)
+                : null;
+        this.customReader = customReader;
+    }
+
+    public Executor writer(){
+        return writer;
+    }
+
+    public Executor reader(){
+        return reader != null ? reader : customReader;
+    }
+
+    public int getWriteQueueDepth(){
+        return writer.getQueue().size();
+    }
+
+    public int getMaxWriteQueueDepth(){
+        return writer.maxQueueDepth.get();
+    }
+
+    public int getReadQueueDepth(){
+        return reader != null ? reader.getQueue().size() : 0;
+    }
+
+    public int getMaxReadQueueDepth(){
+        return reader != null ? reader.maxQueueDepth.get() : 0;
+    }
+
+    public long getCompletedWriteCount(){
+        return writer.getCompletedTaskCount();
+    }
+
+    /*Tasks which are already queued still run, then the Threads end. Without this every
+    * in-memory Database of the tests and benchmarks left its Threads running, they are not
+    * daemon Threads. A custom query Executor is not ours, it is left alone.*/
+    public void shutdown(){
+        writer.shutdown();
+        if(reader != null){
+            reader.shutdown();
+        }
+    }
+
+    //Tasks queued past the capacity by the main Thread or by a Thread of the same executor.
+    public long getOverflowCount(){
+        return writer.overflowCount.get() + (reader != null ? reader.overflowCount.get() : 0);
+    }
+
+    //How many execute() calls had to wait for room in the Queue.
+    public long getBlockedCount(){
+        return writer.blockedCount.get() + (reader != null ? reader.blockedCount.get() : 0);
+    }
+
+    /*The Queue itself is unbounded(LinkedBlockingQueue), the capacity is kept by execute(), so
+    * that the main Thread and our own Threads can still go past it. Threads which waited at the
+    * same time can also go a few tasks past it, it is a limit against floods, not an exact size.*/
+    private static final class BoundedExecutor extends ThreadPoolExecutor {
+
+        final AtomicInteger maxQueueDepth = new AtomicInteger();
+        final AtomicLong overflowCount = new AtomicLong();
+        final AtomicLong blockedCount = new AtomicLong();
+
+        private final int capacity;
+        private final DatabaseThreadFactory threadFactory;
+        //execute() waits on it till beforeExecute() took a task from the Queue.
+        private final Object room = new Object();
+        private volatile int waiting;
+
+        BoundedExecutor(String name, int threads, int queueCapacity) {
+            this(threads, queueCapacity, new DatabaseThreadFactory(name));
+        }
+
+        private BoundedExecutor(int threads, int queueCapacity, DatabaseThreadFactory threadFactory) {
+            super(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), threadFactory);
+            this.capacity = queueCapacity;
+            this.threadFactory = threadFactory;
+        }
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            if(getQueue().size() >= capacity){
+                if(Looper.myLooper() == Looper.getMainLooper() || threadFactory.isOwnThread()){
+                    overflowCount.incrementAndGet();
+                }
+                else {
+                    awaitRoom();
+                }
+            }
+            super.execute(command);
+            int depth = getQueue().size();
+            int max;
+            while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)){
+                //Another Thread updated it meanwhile, check again.
+            }
+        }
+
+        @Override
+        protected void beforeExecute(Thread thread, Runnable task) {
+            //A task was taken from the Queue, so there is room for one more.
+            if(waiting > 0){
+                synchronized (room){
+                    room.notifyAll();
+                }
+            }
+        }
+
+        private void awaitRoom(){
+            blockedCount.incrementAndGet();
+            boolean interrupted = false;
+            synchronized (room){
+                waiting++;
+                try {
+                    while (getQueue().size() >= capacity){
+                        try {
+                            room.wait();
+                        } catch (InterruptedException e) {
+                            //Still queue the task, a write must not be lost, just keep the flag.
+                            interrupted = true;
+                        }
+                    }
+                } finally {
+                    waiting--;
+                }
+            }
+            if(interrupted){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class DatabaseThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+        //Set on every Thread made here, so the executor knows when a task gives it more work.
+        private final ThreadLocal<Boolean> ownThread = new ThreadLocal<>();
+
+        DatabaseThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    //Same priority AsyncTask uses, so the UI Thread always wins over the Database.
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    ownThread.set(Boolean.TRUE);
+                    runnable.run();
+                }
+            }, name + "-" + count.getAndIncrement());
+        }
+
+        boolean isOwnThread(){
+            return ownThread.get() != null;
+        }
+    }
+}
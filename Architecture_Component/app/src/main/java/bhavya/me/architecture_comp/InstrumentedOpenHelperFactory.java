@@ -0,0 +1,460 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteOpenHelper;
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.CancellationSignal;
+import android.os.Looper;
+import android.util.Log;
+import android.util.Pair;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/*Given to Room.databaseBuilder().openHelperFactory(), so every SQL statement Room runs for us
+* goes through here and is measured into QueryMetrics.
+*
+* -> Room only talks to SQLite through SupportSQLiteOpenHelper -> SupportSQLiteDatabase ->
+* SupportSQLiteStatement/Cursor. We take the normal framework implementation and put a thin
+* wrapper around every one of them which measures the time and then calls the real one.
+*
+* -> Statements(insert, update, delete, execSQL) are measured around the call itself. A query
+* is different: SQLite only really runs it when the Cursor is moved for the first time, so a
+* query is measured from query() till the Cursor is closed, and the row count is how far the
+* Cursor was moved. Room reads all the rows and closes the Cursor at once, so it is close to
+* the real query time.
+*
+* -> Every statement which takes longer than slowQueryMillis, and EVERY statement on the main
+* Thread, is logged with its SQL so we can find it.
+*
+* NOTE: The SupportSQLiteDatabase which Room gives to Callback.onCreate()/onOpen() and to
+* Migrations is the inner one, those statements are not measured.*/
+public class InstrumentedOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+
+    private static final String TAG = "WordDbQueries";
+
+    private final SupportSQLiteOpenHelper.Factory mDelegate;
+    private final QueryMetrics mMetrics;
+    private final long mSlowQueryNanos;
+
+    public InstrumentedOpenHelperFactory(QueryMetrics metrics, long slowQueryMillis) {
+        this(new FrameworkSQLiteOpenHelperFactory(), metrics, slowQueryMillis);
+    }
+
+    public InstrumentedOpenHelperFactory(SupportSQLiteOpenHelper.Factory delegate, QueryMetrics metrics,
+                                         long slowQueryMillis) {
+        this.mDelegate = delegate;
+        this.mMetrics = metrics;
+        this.mSlowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+    }
+
+    @Override
+    public SupportSQLiteOpenHelper create(SupportSQLiteOpenHelper.Configuration configuration) {
+        return new InstrumentedOpenHelper(mDelegate.create(configuration));
+    }
+
+    private void record(String sql, long startNanos, int rows){
+        long nanos = System.nanoTime() - startNanos;
+        boolean onMainThread = Looper.myLooper() == Looper.getMainLooper();
+        boolean slow = nanos >= mSlowQueryNanos;
+        mMetrics.record(nanos, rows, onMainThread, slow);
+        if(slow || onMainThread){
+            Log.w(TAG, String.format(Locale.US, "%s%s query %.2f ms, %d rows on %s: %s",
+                    slow ? "SLOW " : "", onMainThread ? "MAIN THREAD" : "",
+                    nanos / 1e6, rows, Thread.currentThread().getName(), sql));
+        }
+    }
+
+    private final class InstrumentedOpenHelper implements SupportSQLiteOpenHelper {
+
+        private final SupportSQLiteOpenHelper mHelper;
+        /*Room calls getWritableDatabase()/getReadableDatabase() for every single query and
+        * transaction, so the wrapper is made once and kept, not allocated on every call. A race
+        * only makes one wrapper too many, both wrap the same database.*/
+        private volatile InstrumentedDatabase mWrapped;
+
+        InstrumentedOpenHelper(SupportSQLiteOpenHelper helper) {
+            this.mHelper = helper;
+        }
+
+        @Override
+        public String getDatabaseName() {
+            return mHelper.getDatabaseName();
+        }
+
+        @Override
+        public void setWriteAheadLoggingEnabled(boolean enabled) {
+            mHelper.setWriteAheadLoggingEnabled(enabled);
+        }
+
+        //Both return the same framework connection pool, so both share the same wrapper.
+        @Override
+        public SupportSQLiteDatabase getWritableDatabase() {
+            return wrap(mHelper.getWritableDatabase());
+        }
+
+        @Override
+        public SupportSQLiteDatabase getReadableDatabase() {
+            return wrap(mHelper.getReadableDatabase());
+        }
+
+        @Override
+        public void close() {
+            mHelper.close();
+            mWrapped = null;
+        }
+
+        //A new wrapper only when the helper gives another database, like after close() and reopen.
+        private InstrumentedDatabase wrap(SupportSQLiteDatabase db){
+            InstrumentedDatabase wrapped = mWrapped;
+            if(wrapped == null || wrapped.mDb != db){
+                wrapped = new InstrumentedDatabase(db);
+                mWrapped = wrapped;
+            }
+            return wrapped;
+        }
+    }
+
+    private final class InstrumentedDatabase implements SupportSQLiteDatabase {
+
+        private final SupportSQLiteDatabase mDb;
+
+        InstrumentedDatabase(SupportSQLiteDatabase db) {
+            this.mDb = db;
+        }
+
+        @Override
+        public SupportSQLiteStatement compileStatement(String sql) {
+            return new InstrumentedStatement(mDb.compileStatement(sql), sql);
+        }
+
+        @Override
+        public Cursor query(String query) {
+            long start = System.nanoTime();
+            return new InstrumentedCursor(mDb.query(query), query, start);
+        }
+
+        @Override
+        public Cursor query(String query, Object[] bindArgs) {
+            long start = System.nanoTime();
+            return new InstrumentedCursor(mDb.query(query, bindArgs), query, start);
+        }
+
+        @Override
+        public Cursor query(SupportSQLiteQuery query) {
+            long start = System.nanoTime();
+            return new InstrumentedCursor(mDb.query(query), query.getSql(), start);
+        }
+
+        @Override
+        public Cursor query(SupportSQLiteQuery query, CancellationSignal cancellationSignal) {
+            long start = System.nanoTime();
+            return new InstrumentedCursor(mDb.query(query, cancellationSignal), query.getSql(), start);
+        }
+
+        @Override
+        public long insert(String table, int conflictAlgorithm, ContentValues values) throws SQLException {
+            long start = System.nanoTime();
+            long rowId = mDb.insert(table, conflictAlgorithm, values);
+            record("INSERT INTO " + table, start, rowId >= 0 ? 1 : 0);
+            return rowId;
+        }
+
+        @Override
+        public int delete(String table, String whereClause, Object[] whereArgs) {
+            long start = System.nanoTime();
+            int count = mDb.delete(table, whereClause, whereArgs);
+            record("DELETE FROM " + table, start, count);
+            return count;
+        }
+
+        @Override
+        public int update(String table, int conflictAlgorithm, ContentValues values, String whereClause,
+                          Object[] whereArgs) {
+            long start = System.nanoTime();
+            int count = mDb.update(table, conflictAlgorithm, values, whereClause, whereArgs);
+            record("UPDATE " + table, start, count);
+            return count;
+        }
+
+        @Override
+        public void execSQL(String sql) throws SQLException {
+            long start = System.nanoTime();
+            mDb.execSQL(sql);
+            record(sql, start, 0);
+        }
+
+        @Override
+        public void execSQL(String sql, Object[] bindArgs) throws SQLException {
+            long start = System.nanoTime();
+            mDb.execSQL(sql, bindArgs);
+            record(sql, start, 0);
+        }
+
+        //Everything below is not a statement, it only goes to the real database.
+
+        @Override
+        public void beginTransaction() {
+            mDb.beginTransaction();
+        }
+
+        @Override
+        public void beginTransactionNonExclusive() {
+            mDb.beginTransactionNonExclusive();
+        }
+
+        @Override
+        public void beginTransactionWithListener(SQLiteTransactionListener transactionListener) {
+            mDb.beginTransactionWithListener(transactionListener);
+        }
+
+        @Override
+        public void beginTransactionWithListenerNonExclusive(SQLiteTransactionListener transactionListener) {
+            mDb.beginTransactionWithListenerNonExclusive(transactionListener);
+        }
+
+        @Override
+        public void endTransaction() {
+            mDb.endTransaction();
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            mDb.setTransactionSuccessful();
+        }
+
+        @Override
+        public boolean inTransaction() {
+            return mDb.inTransaction();
+        }
+
+        @Override
+        public boolean isDbLockedByCurrentThread() {
+            return mDb.isDbLockedByCurrentThread();
+        }
+
+        @Override
+        public boolean yieldIfContendedSafely() {
+            return mDb.yieldIfContendedSafely();
+        }
+
+        @Override
+        public boolean yieldIfContendedSafely(long sleepAfterYieldDelay) {
+            return mDb.yieldIfContendedSafely(sleepAfterYieldDelay);
+        }
+
+        @Override
+        public int getVersion() {
+            return mDb.getVersion();
+        }
+
+        @Override
+        public void setVersion(int version) {
+            mDb.setVersion(version);
+        }
+
+        @Override
+        public long getMaximumSize() {
+            return mDb.getMaximumSize();
+        }
+
+        @Override
+        public long setMaximumSize(long numBytes) {
+            return mDb.setMaximumSize(numBytes);
+        }
+
+        @Override
+        public long getPageSize() {
+            return mDb.getPageSize();
+        }
+
+        @Override
+        public void setPageSize(long numBytes) {
+            mDb.setPageSize(numBytes);
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return mDb.isReadOnly();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return mDb.isOpen();
+        }
+
+        @Override
+        public boolean needUpgrade(int newVersion) {
+            return mDb.needUpgrade(newVersion);
+        }
+
+        @Override
+        public String getPath() {
+            return mDb.getPath();
+        }
+
+        @Override
+        public void setLocale(Locale locale) {
+            mDb.setLocale(locale);
+        }
+
+        @Override
+        public void setMaxSqlCacheSize(int cacheSize) {
+            mDb.setMaxSqlCacheSize(cacheSize);
+        }
+
+        @Override
+        public void setForeignKeyConstraintsEnabled(boolean enable) {
+            mDb.setForeignKeyConstraintsEnabled(enable);
+        }
+
+        @Override
+        public boolean enableWriteAheadLogging() {
+            return mDb.enableWriteAheadLogging();
+        }
+
+        @Override
+        public void disableWriteAheadLogging() {
+            mDb.disableWriteAheadLogging();
+        }
+
+        @Override
+        public boolean isWriteAheadLoggingEnabled() {
+            return mDb.isWriteAheadLoggingEnabled();
+        }
+
+        @Override
+        public List<Pair<String, String>> getAttachedDbs() {
+            return mDb.getAttachedDbs();
+        }
+
+        @Override
+        public boolean isDatabaseIntegrityOk() {
+            return mDb.isDatabaseIntegrityOk();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mDb.close();
+        }
+    }
+
+    private final class InstrumentedStatement implements SupportSQLiteStatement {
+
+        private final SupportSQLiteStatement mStatement;
+        private final String mSql;
+
+        InstrumentedStatement(SupportSQLiteStatement statement, String sql) {
+            this.mStatement = statement;
+            this.mSql = sql;
+        }
+
+        @Override
+        public void execute() {
+            long start = System.nanoTime();
+            mStatement.execute();
+            record(mSql, start, 0);
+        }
+
+        @Override
+        public int executeUpdateDelete() {
+            long start = System.nanoTime();
+            int count = mStatement.executeUpdateDelete();
+            record(mSql, start, count);
+            return count;
+        }
+
+        @Override
+        public long executeInsert() {
+            long start = System.nanoTime();
+            long rowId = mStatement.executeInsert();
+            record(mSql, start, rowId >= 0 ? 1 : 0);
+            return rowId;
+        }
+
+        @Override
+        public long simpleQueryForLong() {
+            long start = System.nanoTime();
+            long value = mStatement.simpleQueryForLong();
+            record(mSql, start, 1);
+            return value;
+        }
+
+        @Override
+        public String simpleQueryForString() {
+            long start = System.nanoTime();
+            String value = mStatement.simpleQueryForString();
+            record(mSql, start, 1);
+            return value;
+        }
+
+        @Override
+        public void bindNull(int index) {
+            mStatement.bindNull(index);
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            mStatement.bindLong(index, value);
+        }
+
+        @Override
+        public void bindDouble(int index, double value) {
+            mStatement.bindDouble(index, value);
+        }
+
+        @Override
+        public void bindString(int index, String value) {
+            mStatement.bindString(index, value);
+        }
+
+        @Override
+        public void bindBlob(int index, byte[] value) {
+            mStatement.bindBlob(index, value);
+        }
+
+        @Override
+        public void clearBindings() {
+            mStatement.clearBindings();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mStatement.close();
+        }
+    }
+
+    private final class InstrumentedCursor extends CursorWrapper {
+
+        private final String mSql;
+        private final long mStartNanos;
+        private boolean recorded;
+
+        InstrumentedCursor(Cursor cursor, String sql, long startNanos) {
+            super(cursor);
+            this.mSql = sql;
+            this.mStartNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            if(!recorded){
+                recorded = true;
+                //Don't call getCount() on a Cursor which was never moved, it would run the query.
+                int position = getPosition();
+                int rows = position < 0 ? 0 : (isAfterLast() ? position : position + 1);
+                record(mSql, mStartNanos, rows);
+            }
+            super.close();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package bhavya.me.architecture_comp;
 
 import android.arch.lifecycle.Observer;
 import android.arch.lifecycle.ViewModelProviders;
+import android.arch.paging.PagedList;
 import android.content.Intent;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
@@ -11,8 +12,6 @@ import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.widget.Toast;
 
-import java.util.List;
-
 public class MainActivity extends AppCompatActivity {
     //SOURCE: https://codelabs.developers.google.com/codelabs/android-room-with-a-view
     /*FACTORY APPROACH SOURCE:
@@ -94,8 +93,8 @@ public class MainActivity extends AppCompatActivity {
         viewModel = ViewModelProviders.of(this).get(WordViewModel.class);
 
         /*-> We have RoomDatabase(WordRoomDatabase) class and a Dao(WordDao) which responsible for
-        * executing queries on Database and Dao has a method called "getAllWords()" which return
-        * List of Words in the database wrapped into LiveData.
+        * executing queries on Database and the Repository gives us the Words in the database as a
+        * PagedList(only the pages around what we see, see WordDataSource) wrapped into LiveData.
         *
         * -> On this LiveData we can set a observer which will be called if there is any change in
         * the Database. LiveData is very useful so that we don't have to query the database
@@ -135,14 +134,14 @@ public class MainActivity extends AppCompatActivity {
         *      thread and if Activity is destroyed then it may lead to Memory leak and That's when
         *      ViewModel help us.
         *         */
-        viewModel.getmWords().observe(this, new Observer<List<Word>>() {
+        viewModel.getmWords().observe(this, new Observer<PagedList<Word>>() {
 
             /*It's the Observer method associated with LiveData which is being called when there
             * will be any change in the Underlying Database and Requery the Database and then
             * we get List of Words, the same data we wrapped under LiveData and tell LiveData to
-            * observe this Data(List of Words(List<Word>))*/
+            * observe this Data(PagedList of Words(PagedList<Word>))*/
             @Override
-            public void onChanged(@Nullable List<Word> words) {
+            public void onChanged(@Nullable PagedList<Word> words) {
 
                 /*It's Custom method we made for our Convenience in the RecyclerView Adapter( Because Adapter
                 is Responsible for Binding the Views with Data from DataSource), Then call
@@ -152,6 +151,16 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        /*A Runnable posted to the DecorView only runs when the window is attached, in the first
+        * traversal(layout and draw) of the screen, so the Migration backfill is only queued
+        * after all the startup work, and the backfill itself runs on the writer Thread.*/
+        getWindow().getDecorView().post(new Runnable() {
+            @Override
+            public void run() {
+                viewModel.startBackfills();
+            }
+        });
+
     }
 
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
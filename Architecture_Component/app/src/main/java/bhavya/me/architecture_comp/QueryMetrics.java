@@ -0,0 +1,101 @@
+package bhavya.me.architecture_comp;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*Durations and row counts of every SQL statement of WordRoomDatabase, filled by
+* InstrumentedOpenHelperFactory.
+*
+* -> The durations go into a histogram with one bucket per power of two of microseconds
+* (bucket 0 is < 1us, bucket 1 is 1-2us, bucket 2 is 2-4us ... bucket 31 is 35 minutes+). So
+* it is always 32 counters, no matter how many queries we record, and we can still tell the
+* p50 and p99 within a factor of two.
+*
+* -> Statements on the main Thread get their own histogram, there shouldn't be any, and if
+* there are we want to see how long they blocked the UI.
+*
+* All counters are atomic, statements run on many Threads at the same time.*/
+public class QueryMetrics {
+
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray background = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray mainThread = new AtomicLongArray(BUCKETS);
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong slowStatements = new AtomicLong();
+    private final AtomicLong mainThreadStatements = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos, int rowCount, boolean onMainThread, boolean slow){
+        long micros = nanos / 1000;
+        int bucket = micros <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        (onMainThread ? mainThread : background).incrementAndGet(bucket);
+        statements.incrementAndGet();
+        if(rowCount > 0){
+            rows.addAndGet(rowCount);
+        }
+        if(slow){
+            slowStatements.incrementAndGet();
+        }
+        if(onMainThread){
+            mainThreadStatements.incrementAndGet();
+        }
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)){
+            //Another Thread updated it meanwhile, check again.
+        }
+    }
+
+    public long getStatementCount(){
+        return statements.get();
+    }
+
+    public long getRowCount(){
+        return rows.get();
+    }
+
+    public long getSlowCount(){
+        return slowStatements.get();
+    }
+
+    public long getMainThreadCount(){
+        return mainThreadStatements.get();
+    }
+
+    public long getMaxMicros(){
+        return maxNanos.get() / 1000;
+    }
+
+    /*Upper bound in microseconds of the bucket which holds the given percentile(0-100) of all
+    * statements, main Thread and background together.*/
+    public long percentileMicros(double percentile){
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            counts[i] = background.get(i) + mainThread.get(i);
+            total += counts[i];
+        }
+        if(total == 0){
+            return 0;
+        }
+        long wanted = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts[i];
+            if(seen >= wanted){
+                return 1L << i;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "statements=%d rows=%d p50<=%dus p99<=%dus max=%dus slow=%d mainThread=%d",
+                getStatementCount(), getRowCount(), percentileMicros(50), percentileMicros(99),
+                getMaxMicros(), getSlowCount(), getMainThreadCount());
+    }
+}
@@ -2,6 +2,7 @@ package bhavya.me.architecture_comp;
 
 import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
 import android.arch.persistence.room.PrimaryKey;
 import android.support.annotation.NonNull;
 
@@ -11,7 +12,12 @@ import android.support.annotation.NonNull;
 *
 * NOTE: Every Table in the Database has @Entity class which represent the Table in the Database.*/
 
-@Entity(tableName = "word_table")
+/*indices: created_at and frequency get an index each, so "newest words" or "most used words"
+* and the backfill in WordBackfill(WHERE created_at = 0) don't scan the whole table. Room names
+* them index_word_table_created_at and index_word_table_frequency, the Migration in
+* WordRoomDatabase has to create them with exactly these names.*/
+@Entity(tableName = "word_table",
+        indices = {@Index("created_at"), @Index("frequency")})
 public class Word {
 
     /*If we have Id then we also can Autogenerate with every new Insertion, so we don't have
@@ -22,7 +28,29 @@ public class Word {
     @ColumnInfo(name = "word")
     private String mWord;
 
-    public Word(String word) {this.mWord = word;}
+    /*Added in version 2 of the Database. Milliseconds since 1970 when the word was inserted,
+    * 0 for rows from version 1 till WordBackfill has filled them.*/
+    @ColumnInfo(name = "created_at")
+    private long mCreatedAt;
+
+    //Added in version 2, how many times the word was used, starts at 0.
+    @ColumnInfo(name = "frequency")
+    private int mFrequency;
+
+    /*A new Word is created now. When Room reads a row it also uses this constructor, and then
+    * sets the real values with the setters.*/
+    public Word(String word) {
+        this.mWord = word;
+        this.mCreatedAt = System.currentTimeMillis();
+    }
 
     public String getWord(){return this.mWord;}
+
+    public long getCreatedAt(){return this.mCreatedAt;}
+
+    public void setCreatedAt(long createdAt){this.mCreatedAt = createdAt;}
+
+    public int getFrequency(){return this.mFrequency;}
+
+    public void setFrequency(int frequency){this.mFrequency = frequency;}
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package bhavya.me.architecture_comp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+
+/*Fills the columns which a Migration added but could not fill itself, chunk by chunk.
+*
+* -> Migrations run inside getDatabase()(actually when the Database is opened the first time)
+* and block everything which wants the Database till they are done. "ALTER TABLE ADD COLUMN"
+* is cheap, SQLite only changes the schema and every old row reads the DEFAULT. But an UPDATE of
+* every row of a 1,000,000 row table in that same transaction would block the first screen for
+* seconds.
+*
+* -> So the Migration only adds the columns and indexes, and this Runnable runs later on the
+* writer Thread(after the first frame, see WordRoomDatabase.startBackfills()). Every chunk is a
+* small transaction of its own, and after every chunk it gives itself to the writer again, so
+* inserts of the user which came meanwhile run between the chunks. If the App is killed in the
+* middle it just continues next time with the rows which are still 0.*/
+class WordBackfill implements Runnable {
+
+    private static final String TAG = "WordBackfill";
+    private static final int CHUNK_SIZE = 2000;
+
+    private final WordDao mDao;
+    private final Executor mWriter;
+    //All old rows get the same time: when the backfill started, we don't know anything better.
+    private final long mCreatedAt = System.currentTimeMillis();
+    private final long mStart = SystemClock.elapsedRealtime();
+    private int total;
+
+    WordBackfill(WordDao dao, Executor writer) {
+        this.mDao = dao;
+        this.mWriter = writer;
+    }
+
+    @Override
+    public void run() {
+        int changed = mDao.backfillCreatedAt(mCreatedAt, CHUNK_SIZE);
+        total += changed;
+        if(changed > 0){
+            mWriter.execute(this);
+        }
+        else if(total > 0){
+            Log.d(TAG, "Backfilled created_at of " + total + " words in "
+                    + (SystemClock.elapsedRealtime() - mStart) + " ms");
+        }
+    }
+}
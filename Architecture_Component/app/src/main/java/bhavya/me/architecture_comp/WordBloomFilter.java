@@ -0,0 +1,86 @@
+package bhavya.me.architecture_comp;
+
+import java.util.Arrays;
+
+/*A Bloom filter of the words in word_table, used by WordRepository before every insert.
+*
+* -> It is a big array of bits. add(word) sets K bits chosen by K hashes of the word, and
+* mightContain(word) checks if all K bits of the word are set.
+*
+* -> If any bit is not set, the word was NEVER added: it is definitely new and we can insert it
+* without asking the Database first. If all bits are set the word is probably there, but it can
+* also be other words which happened to set the same bits(false positive), so only then we run
+* the exists() query to be sure.
+*
+* -> With 10 bits per word and 7 hashes about 1% of new words are false positives. If more words
+* are added than it was made for, it just gives more false positives(more exists() queries), it
+* never gives a wrong "definitely new".
+*
+* -> Words can't be removed from it, deleteAllWords() clears it completely.
+*
+* NOTE: Not thread safe, WordRepository only touches it on the Database writer Thread.*/
+final class WordBloomFilter {
+
+    private static final int BITS_PER_WORD = 10;
+    private static final int HASHES = 7;
+    //2^31 bits(256MB), the most a positive int index can reach.
+    private static final int MAX_LONGS = 1 << 25;
+
+    private final long[] bits;
+    private final long bitCount;
+
+    WordBloomFilter(int expectedWords) {
+        long wanted = Math.max(64L, (long) Math.max(expectedWords, 1) * BITS_PER_WORD);
+        bits = new long[(int) Math.min(MAX_LONGS, (wanted + 63) >>> 6)];
+        bitCount = (long) bits.length << 6;
+    }
+
+    void add(String word){
+        long hash = hash(word);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for(int i = 1; i <= HASHES; i++){
+            long bit = index(h1 + i * h2);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    //false means definitely not added, true means probably added.
+    boolean mightContain(String word){
+        long hash = hash(word);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for(int i = 1; i <= HASHES; i++){
+            long bit = index(h1 + i * h2);
+            if((bits[(int) (bit >>> 6)] & (1L << bit)) == 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void clear(){
+        Arrays.fill(bits, 0L);
+    }
+
+    private long index(int combined){
+        //Kirsch-Mitzenmacher: K hashes made out of two, the sign bit is dropped.
+        return (combined & Integer.MAX_VALUE) % bitCount;
+    }
+
+    /*64 bit hash of the characters, String.hashCode() alone is only 32 bit and too weak for
+    * two independent hashes. It's the finalizer of MurmurHash3 over a simple 64 bit FNV loop.*/
+    private static long hash(String word){
+        long h = 0xcbf29ce484222325L;
+        for(int i = 0; i < word.length(); i++){
+            h ^= word.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
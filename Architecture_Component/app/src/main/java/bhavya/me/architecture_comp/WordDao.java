@@ -1,10 +1,15 @@
 package bhavya.me.architecture_comp;
 
-import android.arch.lifecycle.LiveData;
+import android.arch.persistence.db.SupportSQLiteQuery;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
+import android.arch.persistence.room.RawQuery;
+import android.arch.persistence.room.Transaction;
+import android.database.Cursor;
 
+import java.util.Collections;
 import java.util.List;
 
 /*Data Access Object it's meant to be a Interface or Abstract class in which we have
@@ -16,17 +21,126 @@ import java.util.List;
 * converted to Queries.
 *
 * We have @Insert, @Query, @Delete, @Update: which then be reused to make our custom queries or
-* use use same as it is like @Insert, @Delete*/
+* use use same as it is like @Insert, @Delete
+*
+* It is an abstract class(not interface) so that search() can have a body, Room still
+* implements all the abstract methods.*/
 
 @Dao
-public interface WordDao {
+public abstract class WordDao {
+
+    /*What insert(word, conflict) does when the word is already in the table(word is the
+    * PRIMARY KEY, so it can be there only once).*/
+    public enum Conflict {
+        //Keep the old row, nothing happens.
+        IGNORE,
+        //Overwrite the other columns of the old row with the ones of the new Word.
+        REPLACE,
+        //Fail with SQLiteConstraintException, so the caller finds out about the duplicate.
+        REPORT
+    }
 
+    //Same as insert(word, Conflict.REPORT).
     @Insert
-    void insertTask(Word word);
+    public abstract void insertTask(Word word);
+
+    //Returns the rowid, or -1 if the word was already there.
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract long insertIgnore(Word word);
+
+    /*-> Not an INSERT OR REPLACE: that deletes the old row without firing any DELETE trigger
+    * (SQLite only fires them with PRAGMA recursive_triggers, which is off), and inserts the new
+    * row with a new rowid. word_fts(see WordSearchIndex) is an external content table, so it
+    * would keep the index entries of the old rowid, which point to nothing now.
+    *
+    * -> So REPLACE is an UPDATE of the columns which are not the key, the row keeps its rowid and
+    * its FTS entry stays right(the word itself doesn't change). Only a new word is INSERTed.*/
+    @Transaction
+    public void insertReplace(Word word){
+        if(updateColumns(word.getWord(), word.getCreatedAt(), word.getFrequency()) == 0){
+            insertIgnore(word);
+        }
+    }
+
+    /*Does not SET word, so the row keeps its word and rowid, and the FTS triggers(UPDATE OF word)
+    * don't even fire.*/
+    @Query("UPDATE word_table SET created_at = :createdAt, frequency = :frequency WHERE word = :word")
+    abstract int updateColumns(String word, long createdAt, int frequency);
+
+    /*Throws android.database.sqlite.SQLiteConstraintException for a duplicate with REPORT. The
+    * failed INSERT still costs a write(SQLite only finds the duplicate in the index while
+    * writing), so WordRepository first asks its Bloom filter and exists().*/
+    public void insert(Word word, Conflict conflict){
+        switch (conflict){
+            case IGNORE:
+                insertIgnore(word);
+                break;
+            case REPLACE:
+                insertReplace(word);
+                break;
+            default:
+                insertTask(word);
+                break;
+        }
+    }
+
+    //Probe on the PRIMARY KEY index, it doesn't read the row.
+    @Query("SELECT EXISTS(SELECT 1 FROM word_table WHERE word = :word)")
+    public abstract boolean exists(String word);
+
+    @Query("SELECT COUNT(*) FROM word_table")
+    public abstract int count();
 
-    @Query("SELECT * FROM word_table")
-    LiveData<List<Word>> getAllWords();
+    /*Room runs the whole List inside one transaction, so SQLite writes its journal once for
+    * all the rows instead of once per row like insertTask() does. Words which are already in
+    * the table are skipped, so a bulk import doesn't fail half way because of one duplicate.*/
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract void insertAll(List<Word> words);
+
+    /*Keyset(seek) pagination for WordDataSource. Instead of "LIMIT n OFFSET m", which makes
+    * SQLite walk over all the m rows it skips, we remember the last word we have and ask for the
+    * words after it. word is the PRIMARY KEY, so SQLite jumps there directly in the index and
+    * every page costs the same, no matter if it is the first page or the page at row 1,000,000.*/
+    @Query("SELECT * FROM word_table ORDER BY word ASC LIMIT :limit")
+    public abstract List<Word> getFirstWords(int limit);
+
+    @Query("SELECT * FROM word_table WHERE word >= :key ORDER BY word ASC LIMIT :limit")
+    public abstract List<Word> getWordsFrom(String key, int limit);
+
+    @Query("SELECT * FROM word_table WHERE word > :key ORDER BY word ASC LIMIT :limit")
+    public abstract List<Word> getWordsAfter(String key, int limit);
+
+    //In DESC order(nearest first), WordDataSource reverses them.
+    @Query("SELECT * FROM word_table WHERE word < :key ORDER BY word DESC LIMIT :limit")
+    public abstract List<Word> getWordsBefore(String key, int limit);
 
     @Query("DELETE FROM word_table")
-    void deleteAllWords();
+    public abstract void deleteAllWords();
+
+    /*Words which have a token starting with prefix, uses the FTS index(see WordSearchIndex) so
+    * it doesn't scan word_table. Call it off the main Thread, WordViewModel.setSearchQuery()
+    * does that for the UI.*/
+    public List<Word> search(String prefix, int limit){
+        SupportSQLiteQuery query = WordSearchIndex.prefixQuery(prefix, limit);
+        if(query == null){
+            return Collections.emptyList();
+        }
+        return rawQuery(query);
+    }
+
+    //Only for queries on tables Room doesn't know about, like word_fts.
+    @RawQuery
+    abstract List<Word> rawQuery(SupportSQLiteQuery query);
+
+    /*Used by WordBackfill: gives created_at to at most limit rows from version 1(created_at = 0)
+    * and returns how many it changed, 0 means everything is done. The sub query finds them with
+    * the created_at index, so every chunk costs the same.*/
+    @Query("UPDATE word_table SET created_at = :createdAt WHERE rowid IN "
+            + "(SELECT rowid FROM word_table WHERE created_at = 0 LIMIT :limit)")
+    public abstract int backfillCreatedAt(long createdAt, int limit);
+
+    /*For WordExporter: only the word column(no Word objects) of the next limit words after the
+    * given one, as a Cursor which the caller reads and closes. Start with "" to get the first.*/
+    @Query("SELECT word FROM word_table WHERE word > :after ORDER BY word ASC LIMIT :limit")
+    public abstract Cursor wordsAfterCursor(String after, int limit);
 }
@@ -0,0 +1,100 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.paging.DataSource;
+import android.arch.paging.ItemKeyedDataSource;
+import android.arch.persistence.room.InvalidationTracker;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/*Loads word_table page by page for the PagedList which WordListAdapter shows.
+*
+* -> Earlier getAllWords() loaded EVERY row into one List<Word>, again on every change of the
+* table. With 1,000,000 words that is 1,000,000 Word objects in memory and a full table scan
+* for every single insert.
+*
+* -> Now the PagedList only asks for the pages around the position the RecyclerView shows
+* (PagedList.Config pageSize and prefetchDistance in WordRepository), and every page is one
+* keyset query of WordDao: "the next n words after the last word we have". That's why it is an
+* ItemKeyedDataSource and the key is the word itself(the PRIMARY KEY).
+*
+* -> A DataSource is immutable, when word_table changes it must be invalidated, and then
+* LivePagedListBuilder asks the Factory for a new one, which starts at the last key the user
+* was looking at. Room only does this for the DataSources it generates, so here we listen to
+* the InvalidationTracker ourselves.*/
+public class WordDataSource extends ItemKeyedDataSource<String, Word> {
+
+    private final WordDao mDao;
+
+    WordDataSource(WordRoomDatabase database) {
+        this.mDao = database.wordDao();
+        final InvalidationTracker tracker = database.getInvalidationTracker();
+        final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("word_table") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalidate();
+            }
+        };
+        tracker.addObserver(observer);
+        //Once invalid this DataSource is never used again, so stop listening.
+        addInvalidatedCallback(new InvalidatedCallback() {
+            @Override
+            public void onInvalidated() {
+                tracker.removeObserver(observer);
+            }
+        });
+    }
+
+    /*Without a key it is the first load, so we start at the top. With a key(after an invalidation)
+    * we load half a page before it and the rest from it, so the rows the user is looking at are
+    * loaded and the list doesn't jump.*/
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams<String> params, @NonNull LoadInitialCallback<Word> callback) {
+        String key = params.requestedInitialKey;
+        if(key == null){
+            callback.onResult(mDao.getFirstWords(params.requestedLoadSize));
+            return;
+        }
+        int before = params.requestedLoadSize / 2;
+        List<Word> words = new ArrayList<>(params.requestedLoadSize);
+        words.addAll(mDao.getWordsBefore(key, before));
+        Collections.reverse(words);
+        words.addAll(mDao.getWordsFrom(key, params.requestedLoadSize - before));
+        callback.onResult(words);
+    }
+
+    @Override
+    public void loadAfter(@NonNull LoadParams<String> params, @NonNull LoadCallback<Word> callback) {
+        callback.onResult(mDao.getWordsAfter(params.key, params.requestedLoadSize));
+    }
+
+    @Override
+    public void loadBefore(@NonNull LoadParams<String> params, @NonNull LoadCallback<Word> callback) {
+        List<Word> words = mDao.getWordsBefore(params.key, params.requestedLoadSize);
+        Collections.reverse(words);
+        callback.onResult(words);
+    }
+
+    @NonNull
+    @Override
+    public String getKey(@NonNull Word item) {
+        return item.getWord();
+    }
+
+    public static class Factory extends DataSource.Factory<String, Word> {
+
+        private final WordRoomDatabase mDatabase;
+
+        public Factory(WordRoomDatabase database) {
+            this.mDatabase = database;
+        }
+
+        @Override
+        public DataSource<String, Word> create() {
+            return new WordDataSource(mDatabase);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package bhavya.me.architecture_comp;
+
+import android.database.Cursor;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/*Writes every word of word_table to an OutputStream(a file, a socket, a share Intent...).
+*
+* -> Going through List<Word> would make a Word object for EVERY row at once before the first
+* byte is written, so a big table needs a big heap. Here we never hold more than one window:
+* WINDOW_SIZE words are read with a keyset query(only the word column, see
+* WordDao.wordsAfterCursor()), every row is written to the stream at once, the Cursor is closed,
+* and the next window starts after the last word. So the heap used is the same for 1,000 or for
+* 10,000,000 words.
+*
+* -> Formats:
+*       TEXT:   UTF-8, one word per line.
+*       BINARY: MAGIC, then for every word its UTF-8 length as a varint(7 bits per byte, the
+*               high bit means "more bytes follow") and the UTF-8 bytes, and a 0 length at the
+*               end. Most words are shorter than 128 bytes, so it is 1 byte per word overhead,
+*               and a reader knows where every word ends without looking for '\n'.
+*
+* NOTE: Every window is its own query, not one long transaction, so writes can happen during a
+* long export. A word is never exported twice, but a word inserted before the current position
+* while exporting is not in the export.*/
+public class WordExporter {
+
+    public enum Format {
+        TEXT,
+        BINARY
+    }
+
+    static final byte[] MAGIC = {'W', 'R', 'D', '1'};
+    private static final int WINDOW_SIZE = 1000;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final WordDao mDao;
+
+    WordExporter(WordDao dao) {
+        this.mDao = dao;
+    }
+
+    //Returns the number of words written. Doesn't close out, but flushes it.
+    public int export(OutputStream out, Format format) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 16 * 1024);
+        if(format == Format.BINARY){
+            buffered.write(MAGIC);
+        }
+        int count = 0;
+        String last = "";
+        while (true){
+            int inWindow = 0;
+            Cursor cursor = mDao.wordsAfterCursor(last, WINDOW_SIZE);
+            try {
+                while (cursor.moveToNext()){
+                    last = cursor.getString(0);
+                    byte[] bytes = last.getBytes(UTF_8);
+                    if(format == Format.BINARY){
+                        writeVarint(buffered, bytes.length);
+                        buffered.write(bytes);
+                    }
+                    else {
+                        buffered.write(bytes);
+                        buffered.write('\n');
+                    }
+                    inWindow++;
+                }
+            } finally {
+                cursor.close();
+            }
+            count += inWindow;
+            if(inWindow < WINDOW_SIZE){
+                break;
+            }
+        }
+        if(format == Format.BINARY){
+            writeVarint(buffered, 0);
+        }
+        buffered.flush();
+        return count;
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0){
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
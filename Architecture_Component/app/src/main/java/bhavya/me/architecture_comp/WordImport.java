@@ -0,0 +1,117 @@
+package bhavya.me.architecture_comp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/*One running import of many words, made by WordRepository.importWords().
+*
+* -> insertTask() inserts one row per call and every call is its own transaction, so SQLite
+* has to write(and sync) its journal for every single word. For a dictionary of 100k words
+* that is 100k transactions.
+*
+* -> Here we read the words from the Iterator into chunks of chunkSize and give every chunk to
+* WordDao.insertAll(), which is ONE transaction. So a 100k import with chunkSize 1000 is only
+* 100 transactions.
+*
+* -> Why not everything in one transaction? While the transaction is open the writer Thread
+* can't do anything else and LiveData observers only see the new words when it is committed.
+* So every run() inserts only ONE chunk and then gives this Runnable to the writer again(same as
+* WordBackfill does). Writes which were given meanwhile(insert() of the user) are already in the
+* Queue and run before the next chunk, so they wait for one chunk at most, not for the whole
+* import. Between the chunks we also report progress and can stop(cancel()).
+*
+* The words are read from the Iterator lazily on the writer Thread, so the whole file never has
+* to be in memory.*/
+public class WordImport implements Runnable {
+
+    /*Called on the writer Thread of the Database, post to the main Thread yourself if you want
+    * to touch any View.*/
+    public interface Listener {
+        void onProgress(int imported);
+
+        void onFinished(int imported, boolean cancelled);
+
+        void onError(int imported, Exception e);
+    }
+
+    //For WordRepository, to keep its in-memory copies(WordTrie, Bloom filter) in sync.
+    interface OnChunkInserted {
+        void onChunkInserted(List<Word> chunk);
+    }
+
+    private final WordDao mDao;
+    private final Iterator<String> mWords;
+    private final int mChunkSize;
+    private final Listener mListener;
+    private final OnChunkInserted mOnChunkInserted;
+    private final Executor mWriter;
+    //Reused for every chunk, insertAll() doesn't keep the List. Only touched on the writer Thread.
+    private final List<Word> mChunk;
+
+    private volatile boolean cancelled;
+    private volatile int imported;
+
+    WordImport(WordDao dao, Iterator<String> words, int chunkSize, Listener listener,
+               OnChunkInserted onChunkInserted, Executor writer) {
+        if(chunkSize < 1){
+            throw new IllegalArgumentException("chunkSize must be at least 1, was " + chunkSize);
+        }
+        this.mDao = dao;
+        this.mWords = words;
+        this.mChunkSize = chunkSize;
+        this.mListener = listener;
+        this.mOnChunkInserted = onChunkInserted;
+        this.mWriter = writer;
+        this.mChunk = new ArrayList<>(chunkSize);
+    }
+
+    //One chunk per call, then it gives itself to the writer again till the words are done.
+    @Override
+    public void run() {
+        try {
+            if(!cancelled && mWords.hasNext()){
+                mChunk.clear();
+                while (mChunk.size() < mChunkSize && mWords.hasNext()){
+                    mChunk.add(new Word(mWords.next()));
+                }
+                mDao.insertAll(mChunk);
+                if(mOnChunkInserted != null){
+                    mOnChunkInserted.onChunkInserted(mChunk);
+                }
+                imported += mChunk.size();
+                if(mListener != null){
+                    mListener.onProgress(imported);
+                }
+            }
+            if(!cancelled && mWords.hasNext()){
+                mWriter.execute(this);
+                return;
+            }
+        } catch (RuntimeException e) {
+            //The chunk which failed was rolled back, all chunks before it are already saved.
+            if(mListener != null){
+                mListener.onError(imported, e);
+            }
+            return;
+        }
+        if(mListener != null){
+            mListener.onFinished(imported, cancelled);
+        }
+    }
+
+    //Stops after the chunk which is running now, the chunks already inserted stay in the Database.
+    public void cancel(){
+        cancelled = true;
+    }
+
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    //Number of words given to the Database so far, duplicates which were skipped are counted too.
+    public int getImportedCount(){
+        return imported;
+    }
+}
@@ -1,15 +1,17 @@
 package bhavya.me.architecture_comp;
 
+import android.arch.paging.PagedList;
+import android.arch.paging.PagedListAdapter;
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
-import java.util.List;
-
 /*Adapter of the RecyclerView which can do all the Backend work like: Caching of Views and
 * Binding the Views with the Data. Caching of the Views where RecyclerView Shines.
 *
@@ -26,9 +28,34 @@ import java.util.List;
 *        -> getItemCount() This will tell the RecyclerView that how many items we have in the
 *        DataSource.
 *
+* -> Earlier setWords() called notifyDataSetChanged() for every new list, so even if only one
+* word was added, EVERY visible row was bound again and RecyclerView couldn't animate anything
+* because it didn't know what changed.
+*
+* -> Now it is a PagedListAdapter. When a new PagedList comes it compares it with the old one
+* using DiffUtil(with DIFF_CALLBACK below) on a background Thread, and then only tells the
+* RecyclerView about the rows which were inserted, removed, moved or changed. If one more new
+* list comes while a diff is still running, the result of the old diff is thrown away and only
+* the newest list is shown.
 * */
 
-public class WordListAdapter extends RecyclerView.Adapter<WordListAdapter.WordViewHolder> {
+public class WordListAdapter extends PagedListAdapter<Word, WordListAdapter.WordViewHolder> {
+
+    private static final String TAG = "WordListAdapter";
+
+    /*word is the PRIMARY KEY, so the same word means the same row, and a Word has nothing else
+    * which could change.*/
+    private static final DiffUtil.ItemCallback<Word> DIFF_CALLBACK = new DiffUtil.ItemCallback<Word>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Word oldItem, @NonNull Word newItem) {
+            return oldItem.getWord().equals(newItem.getWord());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Word oldItem, @NonNull Word newItem) {
+            return oldItem.getWord().equals(newItem.getWord());
+        }
+    };
 
     class WordViewHolder extends RecyclerView.ViewHolder{
 
@@ -41,9 +68,13 @@ public class WordListAdapter extends RecyclerView.Adapter<WordListAdapter.WordVi
         }
     }
     private LayoutInflater inflater;
-    private List<Word> mWords;
+
+    //How many times onBindViewHolder() was called, to see how much work every new list costs.
+    private int bindCount;
+    private int bindCountAtLastList;
 
     public WordListAdapter(Context context) {
+        super(DIFF_CALLBACK);
         inflater = LayoutInflater.from(context);
     }
 
@@ -55,11 +86,14 @@ public class WordListAdapter extends RecyclerView.Adapter<WordListAdapter.WordVi
         return new WordViewHolder(view);
     }
 
-    //Get cached views from the ViewHolder and bind the different data everytime.
+    /*Get cached views from the ViewHolder and bind the different data everytime. getItem() also
+    * tells the PagedList which row is shown now, so it loads the next page when we come near the
+    * end of the loaded rows.*/
     @Override
     public void onBindViewHolder(@NonNull WordListAdapter.WordViewHolder wordViewHolder, int i) {
-        if(mWords != null){
-            Word currentWord = mWords.get(i);
+        bindCount++;
+        Word currentWord = getItem(i);
+        if(currentWord != null){
             wordViewHolder.wordItemView.setText(currentWord.getWord());
         }
         else {
@@ -67,18 +101,21 @@ public class WordListAdapter extends RecyclerView.Adapter<WordListAdapter.WordVi
         }
     }
 
-    //Custom made method for setting or Updating the Data in the Adapter.
-    public void setWords(List<Word> words){
-        this.mWords = words;
-        notifyDataSetChanged();
+    /*Custom made method for setting or Updating the Data in the Adapter. It returns at once, the
+    * diff runs in the background and the RecyclerView is updated when it is done.*/
+    public void setWords(PagedList<Word> words){
+        submitList(words);
     }
 
-    // getItemCount() is called many times, and when it is first called,
-    // mWords has not been updated (means initially, it's null, and we can't return null).
+    //Called on the main Thread after the diff of a new list has been given to the RecyclerView.
     @Override
-    public int getItemCount() {
-        if (mWords != null)
-            return mWords.size();
-        else return 0;
+    public void onCurrentListChanged(PagedList<Word> currentList) {
+        super.onCurrentListChanged(currentList);
+        Log.d(TAG, "List changed, binds since last list = " + (bindCount - bindCountAtLastList));
+        bindCountAtLastList = bindCount;
+    }
+
+    public int getBindCount(){
+        return bindCount;
     }
 }
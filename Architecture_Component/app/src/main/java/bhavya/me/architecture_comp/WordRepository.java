@@ -1,11 +1,34 @@
 package bhavya.me.architecture_comp;
 
 import android.app.Application;
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
 import android.arch.lifecycle.LiveData;
-import android.content.Context;
-import android.os.AsyncTask;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.arch.lifecycle.ProcessLifecycleOwner;
+import android.arch.paging.LivePagedListBuilder;
+import android.arch.paging.PagedList;
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.arch.persistence.room.InvalidationTracker;
+import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*Repository Class is Responsible for Accessing the Database or any source for getting the Data.
 * so, then we don't have to change the fetching Implementation to change everywhere.
@@ -28,38 +51,416 @@ import java.util.List;
 
 public class WordRepository {
 
-    private LiveData<List<Word>> words;
+    private static final String TAG = "WordRepository";
+
+    /*How much of word_table the PagedList loads: one page is PAGE_SIZE words, and the next page
+    * is loaded when the RecyclerView comes PREFETCH_DISTANCE rows near the end of what is loaded.
+    * A page is a few screens of rows, so scrolling never waits for the Database.
+    *
+    * Placeholders are off, with them PagedList needs the total count of rows and that's a
+    * COUNT(*) over the whole table on every change.*/
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_DISTANCE = 50;
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final int MIN_BLOOM_FILTER_WORDS = 10000;
+
+    /*insert() doesn't write at once, see flushBuffer(). Buffered inserts are written at most
+    * this long after the first of them, or at once when this many are waiting.*/
+    private static final long INSERT_WINDOW_MILLIS = 50;
+    private static final int MAX_BUFFERED_INSERTS = 100;
+
+    /*Called on the writer Thread when insert() found the word already in the table and the
+    * conflict strategy is REPORT.*/
+    public interface OnDuplicateListener {
+        void onDuplicate(Word word);
+    }
+
+    private LiveData<PagedList<Word>> words;
     private WordRoomDatabase mDatabase;
     private WordDao mWordDao;
+    private Executor mWriteExecutor;
+    //null unless somebody called loadWordTrie(), then it is kept in sync with every write below.
+    private volatile WordTrie mWordTrie;
+
+    private volatile WordDao.Conflict mConflict = WordDao.Conflict.REPORT;
+    private volatile OnDuplicateListener mOnDuplicateListener;
+    /*Only touched on the writer Thread, see WordBloomFilter. Made by mBuildBloomFilter, which
+    * the first flushAsync() queues before the first flush, so the keyset scan over the whole
+    * table never runs inside the transaction of flushBuffer(), where it would hold the write
+    * lock and keep every other write waiting.*/
+    private WordBloomFilter mBloomFilter;
+    private final AtomicBoolean mBloomFilterQueued = new AtomicBoolean();
+
+    //Inserts waiting for the next flushBuffer(), guarded by mBufferLock.
+    private final Object mBufferLock = new Object();
+    private List<PendingInsert> mInsertBuffer = new ArrayList<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /*True from flushAsync() till the flush starts on the writer. Once the buffer is full every
+    * insert() asks for a flush, but one flush takes the whole buffer, so while one is queued
+    * the others would only flood the writer Queue with Runnables which find nothing to do.*/
+    private final AtomicBoolean mFlushQueued = new AtomicBoolean();
+    private final FlushOnStop mFlushOnStop = new FlushOnStop();
+
+    //How many times word_table changed(one commit = one change), every change re-queries the list.
+    private final AtomicInteger mInvalidationCount = new AtomicInteger();
+    private final InvalidationTracker.Observer mInvalidationObserver =
+            new InvalidationTracker.Observer("word_table") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            mInvalidationCount.incrementAndGet();
+        }
+    };
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushBuffer();
+        }
+    };
+
+    private final Runnable mBuildBloomFilter = new Runnable() {
+        @Override
+        public void run() {
+            bloomFilter();
+        }
+    };
+
+    private final Runnable mScheduledFlush = new Runnable() {
+        @Override
+        public void run() {
+            flushAsync();
+        }
+    };
+
+    private final WordImport.OnChunkInserted mOnChunkInserted = new WordImport.OnChunkInserted() {
+        @Override
+        public void onChunkInserted(List<Word> chunk) {
+            WordTrie trie = mWordTrie;
+            for(Word word : chunk){
+                if(mBloomFilter != null){
+                    mBloomFilter.add(word.getWord());
+                }
+                if(trie != null){
+                    trie.add(word.getWord());
+                }
+            }
+        }
+    };
 
     public WordRepository(Application application) {
-        mDatabase = WordRoomDatabase.getDatabase(application);
-        mWordDao = mDatabase.wordDao();
-        words = mWordDao.getAllWords();
+        this(WordRoomDatabase.getDatabase(application));
+    }
+
+    //For the JVM tests and benchmarks, on a Database of their own(WordRoomDatabase.inMemory()).
+    WordRepository(WordRoomDatabase database) {
+        this(database, database.wordDao());
+    }
+
+    //For the tests which count the calls to the WordDao of the Database.
+    WordRepository(WordRoomDatabase database, WordDao wordDao) {
+        mDatabase = database;
+        mWordDao = wordDao;
+        mWriteExecutor = mDatabase.getExecutors().writer();
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setPrefetchDistance(PREFETCH_DISTANCE)
+                .setInitialLoadSizeHint(PAGE_SIZE * 2)
+                .setEnablePlaceholders(false)
+                .build();
+        //Pages are loaded on our read pool, not on the default IO executor of the arch library.
+        words = new LivePagedListBuilder<>(new WordDataSource.Factory(mDatabase), config)
+                .setFetchExecutor(mDatabase.getExecutors().reader())
+                .build();
+        mDatabase.getInvalidationTracker().addObserver(mInvalidationObserver);
+        //Whatever is still in the buffer is written when the App goes to the background.
+        ProcessLifecycleOwner.get().getLifecycle().addObserver(mFlushOnStop);
     }
 
-    LiveData<List<Word>> getWords(){
+    LiveData<PagedList<Word>> getWords(){
         return words;
     }
 
-    public void insert(Word word){
-        new asyncTaskDb(mWordDao).execute(word);
+    /*Always perform the Database calls off the Thread, earlier we used a new AsyncTask for every
+    * insert, but now insertion is given to the single writer Thread of WordRoomDatabase, so it
+    * doesn't wait behind the AsyncTasks of the rest of the app. But if we are Fetching with the
+    * help of LiveData then that will be automatically be done off the main thread.
+    *
+    * A duplicate word is handled by the conflict strategy(setConflictStrategy(), REPORT by
+    * default) and no longer crashes the writer Thread.
+    *
+    * -> Write-behind: every commit to word_table invalidates the PagedList, and the list is
+    * queried again and diffed. If the user(or some code) inserts 20 words quickly that were 20
+    * commits and 20 re-queries. Now the words wait in mInsertBuffer for INSERT_WINDOW_MILLIS(or
+    * till MAX_BUFFERED_INSERTS are waiting) and are then written in ONE transaction, so the
+    * observers are invalidated only once. The order of the writes is never changed.*/
+    public void insert(final Word word){
+        insert(word, mConflict);
     }
 
-    /*Always perform the Database calls off the Thread, that's we used AsyncTask, and now insertion
-    * is being done off the Thread. But if we are Fetching with the help of LiveData then
-    * that will be automatically be done off the main thread.*/
-    private static class asyncTaskDb extends AsyncTask<Word, Void, Void>{
-        WordDao dao;
+    public void insert(final Word word, final WordDao.Conflict conflict){
+        int buffered;
+        synchronized (mBufferLock){
+            mInsertBuffer.add(new PendingInsert(word, conflict));
+            buffered = mInsertBuffer.size();
+        }
+        if(buffered >= MAX_BUFFERED_INSERTS){
+            mHandler.removeCallbacks(mScheduledFlush);
+            flushAsync();
+        }
+        else if(buffered == 1){
+            mHandler.postDelayed(mScheduledFlush, INSERT_WINDOW_MILLIS);
+        }
+    }
 
-        asyncTaskDb(WordDao dao) {
-            this.dao = dao;
+    /*Writes the buffered inserts now, without waiting for the window. The buffer is taken on
+    * the writer Thread itself, so every write given after this call still comes after them.
+    * If a flush is already queued nothing new is queued, that one runs before anything given
+    * after this call and takes everything buffered till then.*/
+    public void flushAsync(){
+        if(!mBloomFilterQueued.get() && mBloomFilterQueued.compareAndSet(false, true)){
+            mWriteExecutor.execute(mBuildBloomFilter);
+        }
+        if(mFlushQueued.compareAndSet(false, true)){
+            mWriteExecutor.execute(mFlushTask);
         }
+    }
 
-        @Override
-        protected Void doInBackground(Word... words) {
-            dao.insertTask(words[0]);
-            return null;
+    /*Barrier for tests: returns when every insert() called before it is committed. Never call
+    * it on the main Thread.*/
+    @WorkerThread
+    public void flush() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        flushAsync();
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        done.await();
+    }
+
+    public int getInvalidationCount(){
+        return mInvalidationCount.get();
+    }
+
+    //Called from WordViewModel.onCleared(), on the main Thread.
+    void close(){
+        ProcessLifecycleOwner.get().getLifecycle().removeObserver(mFlushOnStop);
+        mDatabase.getInvalidationTracker().removeObserver(mInvalidationObserver);
+        mHandler.removeCallbacks(mScheduledFlush);
+        flushAsync();
+    }
+
+    //Only runs on the writer Thread.
+    private void flushBuffer(){
+        /*Cleared before the buffer is taken: an insert() which comes after it queues the next
+        * flush, one which came before it is taken now.*/
+        mFlushQueued.set(false);
+        final List<PendingInsert> inserts;
+        synchronized (mBufferLock){
+            if(mInsertBuffer.isEmpty()){
+                return;
+            }
+            inserts = mInsertBuffer;
+            mInsertBuffer = new ArrayList<>();
+        }
+        //Already made by mBuildBloomFilter, never inside the transaction.
+        final WordBloomFilter bloomFilter = bloomFilter();
+        mDatabase.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for(PendingInsert insert : inserts){
+                    insertOnWriter(insert.word, insert.conflict, bloomFilter);
+                }
+            }
+        });
+        WordTrie trie = mWordTrie;
+        if(trie != null){
+            for(PendingInsert insert : inserts){
+                trie.add(insert.word.getWord());
+            }
+        }
+    }
+
+    public void setConflictStrategy(WordDao.Conflict conflict){
+        mConflict = conflict;
+    }
+
+    public void setOnDuplicateListener(OnDuplicateListener listener){
+        mOnDuplicateListener = listener;
+    }
+
+    /*-> Most inserted words are new. For them the Bloom filter says "definitely new" and we
+    * insert at once, without the exists() query.
+    *
+    * -> Only if the filter says "maybe there" we ask exists(), and a duplicate is then handled
+    * without trying the INSERT at all.
+    *
+    * -> Words written to word_table without this class(anything calling WordDao directly) are
+    * not in the filter, so a "definitely new" can still hit a duplicate. That's why the INSERT
+    * is an INSERT OR IGNORE: a duplicate just returns -1 instead of throwing, which would also
+    * roll back the whole transaction of flushBuffer().*/
+    private void insertOnWriter(Word word, WordDao.Conflict conflict, WordBloomFilter bloomFilter){
+        String text = word.getWord();
+        if(bloomFilter.mightContain(text) && mWordDao.exists(text)){
+            onDuplicate(word, conflict);
+            return;
+        }
+        if(mWordDao.insertIgnore(word) == -1){
+            onDuplicate(word, conflict);
+        }
+        bloomFilter.add(text);
+    }
+
+    private void onDuplicate(Word word, WordDao.Conflict conflict){
+        switch (conflict){
+            case REPLACE:
+                mWordDao.insertReplace(word);
+                break;
+            case REPORT:
+                OnDuplicateListener listener = mOnDuplicateListener;
+                if(listener != null){
+                    listener.onDuplicate(word);
+                }
+                else {
+                    Log.w(TAG, "Word already exists: " + word.getWord());
+                }
+                break;
+            default:
+                //IGNORE, keep the old row.
+                break;
+        }
+    }
+
+    /*Made with room for twice the current words, so it stays accurate while the table grows.
+    * Only on the writer Thread and outside of any transaction, see mBloomFilter.*/
+    private WordBloomFilter bloomFilter(){
+        if(mBloomFilter == null){
+            WordBloomFilter bloomFilter = new WordBloomFilter(Math.max(MIN_BLOOM_FILTER_WORDS, mWordDao.count() * 2));
+            addAllWords(null, bloomFilter);
+            mBloomFilter = bloomFilter;
+        }
+        return mBloomFilter;
+    }
+
+    /*Reads word_table page by page with the same keyset queries as WordDataSource, so we never
+    * hold the whole table as List<Word>. Either of the two can be null.*/
+    private void addAllWords(WordTrie trie, WordBloomFilter bloomFilter){
+        List<Word> page = mWordDao.getFirstWords(LOAD_PAGE_SIZE);
+        while (!page.isEmpty()){
+            for(Word word : page){
+                if(trie != null){
+                    trie.add(word.getWord());
+                }
+                if(bloomFilter != null){
+                    bloomFilter.add(word.getWord());
+                }
+            }
+            page = mWordDao.getWordsAfter(page.get(page.size() - 1).getWord(), LOAD_PAGE_SIZE);
+        }
+    }
+
+    //See WordRoomDatabase.startBackfills(), call it after the first frame.
+    void startBackfills(){
+        mDatabase.startBackfills();
+    }
+
+    public void deleteAllWords(){
+        //Buffered inserts were given before, so they must be written(and deleted) first.
+        flushAsync();
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mWordDao.deleteAllWords();
+                if(mBloomFilter != null){
+                    mBloomFilter.clear();
+                }
+                WordTrie trie = mWordTrie;
+                if(trie != null){
+                    trie.clear();
+                }
+            }
+        });
+    }
+
+    /*Fills trie with all the words of word_table and from then on keeps it up to date on
+    * insert(), importWords() and deleteAllWords(). It runs on the writer Thread, so no write can
+    * happen between reading the table and adding the words.*/
+    void loadWordTrie(final WordTrie trie){
+        /*Set at once, not when loading is done: writes queued before the load are added and then
+        * read again by it(add() ignores duplicates), writes queued after it are added after it.*/
+        mWordTrie = trie;
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                trie.clear();
+                addAllWords(trie, null);
+            }
+        });
+    }
+
+    /*For many words at once(like a dictionary file) use this instead of calling insert() for
+    * every word, see WordImport. It runs on the same writer Thread, after the writes which were
+    * given before it, and writes given after it run between its chunks. Keep the returned
+    * WordImport if you want to cancel() it.*/
+    public WordImport importWords(Iterator<String> words, int chunkSize, WordImport.Listener listener){
+        WordImport wordImport = new WordImport(mWordDao, words, chunkSize, listener, mOnChunkInserted, mWriteExecutor);
+        flushAsync();
+        mWriteExecutor.execute(wordImport);
+        return wordImport;
+    }
+
+    /*Same as WordDao.search(), but the query can be stopped with signal.cancel() while SQLite is
+    * still running it, then it throws OperationCanceledException. Room's @RawQuery doesn't take
+    * a CancellationSignal, so here we run it on the SupportSQLiteDatabase directly. Call it off
+    * the main Thread.*/
+    List<Word> search(String prefix, int limit, CancellationSignal signal){
+        SupportSQLiteQuery query = WordSearchIndex.prefixQuery(prefix, limit);
+        if(query == null){
+            return Collections.emptyList();
+        }
+        Cursor cursor = mDatabase.getOpenHelper().getReadableDatabase().query(query, signal);
+        try {
+            List<Word> words = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()){
+                words.add(new Word(cursor.getString(0)));
+            }
+            return words;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*Streams all the words to out, see WordExporter. It blocks till everything is written, so
+    * call it off the main Thread(for example on getReadExecutor()).*/
+    @WorkerThread
+    public int exportWords(OutputStream out, WordExporter.Format format) throws IOException {
+        return new WordExporter(mWordDao).export(out, format);
+    }
+
+    Executor getReadExecutor(){
+        return mDatabase.getExecutors().reader();
+    }
+
+    private static final class PendingInsert {
+
+        final Word word;
+        final WordDao.Conflict conflict;
+
+        PendingInsert(Word word, WordDao.Conflict conflict) {
+            this.word = word;
+            this.conflict = conflict;
+        }
+    }
+
+    //Not private, the lifecycle annotation processor generates an adapter which calls onStop().
+    class FlushOnStop implements LifecycleObserver {
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+        void onStop(){
+            mHandler.removeCallbacks(mScheduledFlush);
+            flushAsync();
         }
     }
 }
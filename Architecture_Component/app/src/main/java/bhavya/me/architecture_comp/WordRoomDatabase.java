@@ -1,20 +1,40 @@
 package bhavya.me.architecture_comp;
 
 import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
 import android.arch.persistence.room.Database;
 import android.arch.persistence.room.Room;
 import android.arch.persistence.room.RoomDatabase;
+import android.arch.persistence.room.migration.Migration;
 import android.content.Context;
-import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /*This is the Main Class of RoomDatabase. This is the Singleton class and here we
 * join the pieces(Entities and Dao)*/
 
-/*Give the database Entities(Tables) and Version of the Database.*/
-@Database(entities = {Word.class}, version = 1, exportSchema = false)
+/*Give the database Entities(Tables) and Version of the Database.
+*
+* exportSchema: Room writes the schema of every version as JSON into app/schemas(see
+* room.schemaLocation in build.gradle). Those files go into git, so we always know what the
+* tables looked like in every version we shipped, and Migrations can be tested against them.
+*
+* Version history:
+*       1: word_table(word)
+*       2: + created_at and frequency columns with an index each, see MIGRATION_1_2*/
+@Database(entities = {Word.class}, version = 2, exportSchema = true)
 public abstract class WordRoomDatabase extends RoomDatabase {
 
+    private static final String TAG = "WordRoomDatabase";
+    private static final String SEED_ASSET = "seed_words.txt";
+
     /*the volatile modifier guarantees that any thread that reads a field will see
     the most recently written value. Because with Variables we cannot use synchronized keyword,
     that's when Volatile comes in.
@@ -25,59 +45,239 @@ public abstract class WordRoomDatabase extends RoomDatabase {
     SOURCE: https://stackoverflow.com/questions/106591/do-you-ever-use-the-volatile-keyword-in-java*/
     private static volatile WordRoomDatabase INSTANCE;
 
+    /*-> When the Database on the device has an older version, Room runs these Migrations one
+    * after another inside the open(before any query can run), then checks that the tables look
+    * exactly like the @Entity classes. Without a Migration for a version Room would throw, and
+    * fallbackToDestructiveMigration() would delete all the words of the user, so we never use it.
+    *
+    * -> A Migration blocks the first query, so it must not rewrite the rows. Filling the new
+    * columns of all the old rows is done later in chunks, see WordBackfill. But building the
+    * new indexes reads every row and still blocks the first query, it grows with the table.
+    *
+    * -> For the next version: add MIGRATION_2_3 here and to ALL_MIGRATIONS, and bump version.*/
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            /*ADD COLUMN with a constant DEFAULT doesn't touch the rows, SQLite just returns the
+            * DEFAULT for rows which don't have the column yet. CREATE INDEX does read and sort
+            * all of them, that is most of the time of this Migration. The indexes must have the
+            * names Room expects(index_<table>_<column>).*/
+            database.execSQL("ALTER TABLE word_table ADD COLUMN created_at INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE word_table ADD COLUMN frequency INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_word_table_created_at "
+                    + "ON word_table (created_at)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_word_table_frequency "
+                    + "ON word_table (frequency)");
+        }
+    };
+
+    static final Migration[] ALL_MIGRATIONS = {MIGRATION_1_2};
+
+    /*Our own Threads for Database work, one writer and a small pool of readers, see
+    * DatabaseExecutors. They live as long as the Database(for the INSTANCE the whole app), and
+    * close() stops them. Set in build() right after Room made the object, Room makes it itself
+    * so it can't take them in a constructor.*/
+    private DatabaseExecutors mExecutors;
+    private QueryMetrics mQueryMetrics;
+    private final AtomicBoolean mBackfillsStarted = new AtomicBoolean();
+
+    /*-> How the Database is opened, give it to the first getDatabase() call, later calls get the
+    * INSTANCE which is already open and their Config is ignored.
+    *
+    * -> journalMode: WRITE_AHEAD_LOGGING by default. Without WAL a write locks the whole file
+    * and every reader waits for it, with WAL readers keep reading the last committed data while
+    * our writer Thread writes, and a commit only appends to the log instead of rewriting pages.
+    *
+    * -> readThreads: size of the read pool of DatabaseExecutors. With WAL the framework opens
+    * more than one connection, so that many queries can really run at the same time. (The
+    * number of connections itself is decided by the framework, SupportSQLite has no setter.)
+    *
+    * -> queryExecutor: use your own Executor for our queries instead of the read pool.
+    *
+    * -> slowQueryMillis: statements which take longer are logged, see InstrumentedOpenHelperFactory.*/
+    public static final class Config {
+
+        private JournalMode journalMode = JournalMode.WRITE_AHEAD_LOGGING;
+        private int readThreads = 2;
+        private Executor queryExecutor;
+        private long slowQueryMillis = 16;
+
+        public Config journalMode(JournalMode journalMode){
+            this.journalMode = journalMode;
+            return this;
+        }
+
+        public Config readThreads(int readThreads){
+            if(readThreads < 1){
+                throw new IllegalArgumentException("readThreads must be at least 1, was " + readThreads);
+            }
+            this.readThreads = readThreads;
+            return this;
+        }
+
+        public Config queryExecutor(Executor queryExecutor){
+            this.queryExecutor = queryExecutor;
+            return this;
+        }
+
+        public Config slowQueryMillis(long slowQueryMillis){
+            this.slowQueryMillis = slowQueryMillis;
+            return this;
+        }
+    }
+
     static WordRoomDatabase getDatabase(final Context context){
+        return getDatabase(context, new Config());
+    }
+
+    static WordRoomDatabase getDatabase(final Context context, Config config){
         if(INSTANCE == null){
             synchronized (WordRoomDatabase.class){
                 if(INSTANCE == null){
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
+                    INSTANCE = build(Room.databaseBuilder(context.getApplicationContext(),
                             WordRoomDatabase.class, "word_database")
-                            .addCallback(new RoomDatabase.Callback(){
-                                @Override
-                                public void onOpen(@NonNull SupportSQLiteDatabase db) {
-                                    super.onOpen(db);
-                                    new PopulateAsync(INSTANCE).execute();
-                                }
-                            })
-                            .build();
+                            .setJournalMode(config.journalMode), context.getApplicationContext(), config);
                 }
             }
         }
         return INSTANCE;
     }
 
+    /*A new Database which only lives in memory, for the JVM tests and benchmarks. Same
+    * Migrations, instrumentation, FTS index and DatabaseExecutors as getDatabase(), but it starts
+    * empty(no seed words) and is not the INSTANCE. close() it when done.*/
+    static WordRoomDatabase inMemory(Context context, Config config){
+        return build(Room.inMemoryDatabaseBuilder(context.getApplicationContext(), WordRoomDatabase.class),
+                null, config);
+    }
+
+    /*Like getDatabase() but on a Database file of the given name and not the INSTANCE, with no
+    * seed words. For the Migration tests, which prepare an old version of that file first.*/
+    static WordRoomDatabase open(Context context, String name, Config config){
+        return open(context, name, config, false);
+    }
+
+    //With seed true it is made exactly like the INSTANCE, for the cold start test.
+    static WordRoomDatabase open(Context context, String name, Config config, boolean seed){
+        return build(Room.databaseBuilder(context.getApplicationContext(), WordRoomDatabase.class, name)
+                .setJournalMode(config.journalMode), seed ? context.getApplicationContext() : null, config);
+    }
+
+    //seedContext null means no seed words in onCreate().
+    private static WordRoomDatabase build(RoomDatabase.Builder<WordRoomDatabase> builder,
+                                          final Context seedContext, Config config){
+        QueryMetrics queryMetrics = new QueryMetrics();
+        WordRoomDatabase database = builder
+                .addMigrations(ALL_MIGRATIONS)
+                .openHelperFactory(new InstrumentedOpenHelperFactory(queryMetrics,
+                        config.slowQueryMillis))
+                .addCallback(new RoomDatabase.Callback(){
+                    //Only once, when the Database file is made the first time.
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        super.onCreate(db);
+                        if(seedContext != null){
+                            seed(seedContext, db);
+                        }
+                    }
+
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                        super.onOpen(db);
+                        //Room doesn't know about the FTS table, see WordSearchIndex.
+                        WordSearchIndex.create(db);
+                    }
+                })
+                .build();
+        database.mExecutors = new DatabaseExecutors(config.readThreads, config.queryExecutor);
+        database.mQueryMetrics = queryMetrics;
+        return database;
+    }
+
     /*We will get Dao(WordDao) instance through the Database Instance(Which is Singleton),
     * so that we don't access the Database with different Object in different Places. Only
     * One Instance through out the Lifecycle of the App is responsible for Accessing
     * the Database.*/
     public abstract WordDao wordDao();
 
-    /*-> This is The Temporary Data we are adding whenever Database INSTANCE is created,
-    * and for this Run the App and see that even if we minimize the App and Resume there will
-    * be no Database INSTANCE creation.
-    *
-    * -> Because everytime Database(WordRoomDatabase) INSTANCE is created a callback to this
-    * Class will trigger and all the Data in our database will be vanished and only we left
-    * with
-    *                          -> Hello
-    *                          -> World
-    *
-    * So that will tell us that Database INSTANCE creation only happen only once in a Application
-    * Lifecycle.*/
-    private static class PopulateAsync extends AsyncTask<Void, Void, Void>{
-        private WordDao mDao;
+    public DatabaseExecutors getExecutors(){
+        return mExecutors;
+    }
 
-        public PopulateAsync(WordRoomDatabase db) {
-            this.mDao = db.wordDao();
+    /*Stops our Threads too, tasks already given to them still run first. Only the Databases of
+    * inMemory() and open() are ever closed, the INSTANCE lives as long as the App.*/
+    @Override
+    public void close() {
+        if(mExecutors != null){
+            mExecutors.shutdown();
         }
+        super.close();
+    }
 
-        @Override
-        protected Void doInBackground(Void... voids) {
-            mDao.deleteAllWords();
-            Word word1 = new Word("Hello");
-            mDao.insertTask(word1);
-            Word word2 = new Word("World");
-            mDao.insertTask(word2);
-            return null;
+    /*Starts the WordBackfill on the writer Thread, only the first call does something. Call it
+    * after the first frame is drawn(MainActivity does), so it never competes with startup.*/
+    public void startBackfills(){
+        if(mBackfillsStarted.compareAndSet(false, true)){
+            mExecutors.writer().execute(new WordBackfill(wordDao(), mExecutors.writer()));
+        }
+    }
+
+    //Durations and row counts of every statement since the Database was opened.
+    public QueryMetrics getQueryMetrics(){
+        return mQueryMetrics;
+    }
+
+    /*-> This is the starting Data of the Database, the words in assets/seed_words.txt(one word
+    * per line).
+    *
+    * -> Earlier a callback in onOpen() deleted ALL the words and inserted "Hello" and "World"
+    * again, on every start of the App. So every word the user added was gone after a restart,
+    * and every start did write I/O before the first screen was shown.
+    *
+    * -> Now it is called from onCreate() of the Callback, which only runs when the Database file
+    * doesn't exist yet(first start after install or after clearing the data). SQLiteOpenHelper
+    * calls onCreate() inside the same transaction which creates the tables, so all the seed
+    * words are written in that one transaction with one compiled statement, and a crash in
+    * between leaves no half seeded Database.
+    *
+    * NOTE: It runs on whichever Thread opens the Database first, and that is always one of our
+    * DatabaseExecutors or Room's own Threads, never the main Thread.*/
+    private static void seed(Context context, SupportSQLiteDatabase db){
+        long start = SystemClock.elapsedRealtime();
+        int count = 0;
+        long createdAt = System.currentTimeMillis();
+        SupportSQLiteStatement statement = db.compileStatement(
+                "INSERT OR IGNORE INTO word_table (word, created_at) VALUES (?, ?)");
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(
+                    context.getAssets().open(SEED_ASSET), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null){
+                line = line.trim();
+                if(line.isEmpty()){
+                    continue;
+                }
+                statement.bindString(1, line);
+                statement.bindLong(2, createdAt);
+                statement.executeInsert();
+                count++;
+            }
+        } catch (IOException e) {
+            //Without seed words the App still works, it just starts empty.
+            Log.e(TAG, "Could not read " + SEED_ASSET, e);
+        } finally {
+            if(reader != null){
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+            try {
+                statement.close();
+            } catch (IOException ignored) {
+            }
         }
+        Log.d(TAG, "Seeded " + count + " words in " + (SystemClock.elapsedRealtime() - start) + " ms");
     }
 }
@@ -0,0 +1,95 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.persistence.db.SimpleSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.database.Cursor;
+
+/*Full-text index over word_table, so we can search words without a full table scan.
+*
+* -> "WHERE word LIKE '%x%'" can't use any index, SQLite has to read every row for every
+* keystroke. An FTS4 table keeps an inverted index(token -> rows), and with the prefix option
+* it also keeps an index of the first 1, 2 and 3 letters of every token, so "MATCH 'he*'"
+* directly finds the rows instead of scanning.
+*
+* -> It is an external content table(content="word_table"), so the words are NOT stored twice,
+* word_fts only keeps the index and reads the text from word_table by rowid.
+*
+* -> The triggers keep the index in sync with word_table, no matter from where the row is
+* inserted or deleted(insertTask(), insertAll(), deleteAllWords()...). The UPDATE ones only
+* fire when the word itself is SET, an UPDATE of created_at or frequency(WordBackfill,
+* insertReplace()) doesn't change what is indexed and would only rewrite the index for nothing.
+*
+* NOTE: Room 1.1 doesn't know about FTS tables(no @Fts4 yet), so it can't create or check this
+* table for us. We create it ourselves in WordRoomDatabase's Callback, and the queries on it
+* have to be @RawQuery because Room checks every @Query at compile time against the tables it
+* knows.*/
+final class WordSearchIndex {
+
+    static final String TABLE = "word_fts";
+
+    /*Triggers of older builds which fired on every UPDATE of word_table, CREATE TRIGGER IF NOT
+    * EXISTS would keep them, so they are dropped first.*/
+    private static final String[] DROP_TRIGGERS = {
+            "DROP TRIGGER IF EXISTS word_fts_before_update",
+            "DROP TRIGGER IF EXISTS word_fts_after_update"
+    };
+
+    private static final String[] CREATE_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS word_fts_before_update_word BEFORE UPDATE OF word ON word_table "
+                    + "BEGIN DELETE FROM word_fts WHERE docid = old.rowid; END",
+            "CREATE TRIGGER IF NOT EXISTS word_fts_before_delete BEFORE DELETE ON word_table BEGIN "
+                    + "DELETE FROM word_fts WHERE docid = old.rowid; END",
+            "CREATE TRIGGER IF NOT EXISTS word_fts_after_update_word AFTER UPDATE OF word ON word_table "
+                    + "BEGIN INSERT INTO word_fts(docid, word) VALUES (new.rowid, new.word); END",
+            "CREATE TRIGGER IF NOT EXISTS word_fts_after_insert AFTER INSERT ON word_table BEGIN "
+                    + "INSERT INTO word_fts(docid, word) VALUES (new.rowid, new.word); END"
+    };
+
+    private WordSearchIndex() {
+    }
+
+    /*Called every time the Database is opened, it's cheap when everything already exists. If
+    * the index is new(first start after an update of the app) it is built once from the words
+    * which are already in word_table.*/
+    static void create(SupportSQLiteDatabase db){
+        boolean exists;
+        Cursor cursor = db.query("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new Object[]{TABLE});
+        try {
+            exists = cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+        db.beginTransaction();
+        try {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE
+                    + " USING fts4(content=\"word_table\", prefix=\"1,2,3\", word)");
+            for(String trigger : DROP_TRIGGERS){
+                db.execSQL(trigger);
+            }
+            for(String trigger : CREATE_TRIGGERS){
+                db.execSQL(trigger);
+            }
+            if(!exists){
+                db.execSQL("INSERT INTO " + TABLE + "(" + TABLE + ") VALUES ('rebuild')");
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /*Words which have a token starting with prefix, at most limit of them. The prefix is given
+    * as a quoted phrase("prefix*") so characters like - or OR typed by the user are not read as
+    * FTS operators. Returns null for an empty prefix, there is nothing to search for.*/
+    static SupportSQLiteQuery prefixQuery(String prefix, int limit){
+        String trimmed = prefix == null ? "" : prefix.trim();
+        if(trimmed.isEmpty()){
+            return null;
+        }
+        String match = "\"" + trimmed.replace("\"", "\"\"") + "*\"";
+        return new SimpleSQLiteQuery("SELECT word FROM " + TABLE + " WHERE " + TABLE
+                + " MATCH ? LIMIT " + limit, new Object[]{match});
+    }
+}
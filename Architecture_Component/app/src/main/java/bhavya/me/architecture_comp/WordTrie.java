@@ -0,0 +1,221 @@
+package bhavya.me.architecture_comp;
+
+import java.util.Arrays;
+
+/*All the words in memory as a prefix tree(trie), so autocomplete doesn't need the Database.
+*
+* -> Every node is one character, and the path from the root to a node spells a prefix. All
+* words with the same prefix share those nodes, so "hello", "help" and "helmet" keep "hel" only
+* once. To complete "hel" we walk 3 nodes down and then read the words under that node.
+*
+* -> Compact: there is no Node object per character. A node is just an index into a few
+* parallel arrays:
+*       chars[n]        the character of node n
+*       firstChild[n]   index of its first child, 0 if none(0 is the root, never a child)
+*       nextSibling[n]  index of its next sibling, 0 if none
+*       terminal[n]     true if a word ends at node n
+* So one node costs 11 bytes, and there is no object header or pointer per node. Siblings are
+* kept sorted by character, that's why completions come in alphabetical order.
+*
+* -> complete() doesn't allocate anything: the caller gives a Completions object which it keeps
+* and reuses on every keystroke, and we walk the tree with a stack array which is already big
+* enough(it grows in add(), not in complete()).
+*
+* All methods are synchronized, writes come from the Database writer Thread and complete() from
+* the main Thread, and both are short.*/
+public class WordTrie {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private int[] firstChild = new int[INITIAL_CAPACITY];
+    private int[] nextSibling = new int[INITIAL_CAPACITY];
+    private boolean[] terminal = new boolean[INITIAL_CAPACITY];
+    private int nodeCount = 1; //Node 0 is the root.
+    private int wordCount;
+
+    //Used by complete(): the path of nodes and the word spelled so far, as long as the longest word.
+    private int[] stack = new int[16];
+    private char[] path = new char[16];
+
+    /*Top-K results of complete(), keep one and reuse it. Every result is a StringBuilder which
+    * is only cleared and filled again, so once they are big enough nothing is allocated.*/
+    public static final class Completions {
+
+        private final StringBuilder[] words;
+        private int count;
+
+        public Completions(int maxResults) {
+            words = new StringBuilder[maxResults];
+            for(int i = 0; i < maxResults; i++){
+                words[i] = new StringBuilder(16);
+            }
+        }
+
+        public int size(){
+            return count;
+        }
+
+        //Valid till the next complete() with this object, copy it(toString()) if you want to keep it.
+        public CharSequence get(int index){
+            if(index >= count){
+                throw new IndexOutOfBoundsException("index " + index + ", size " + count);
+            }
+            return words[index];
+        }
+
+        public int capacity(){
+            return words.length;
+        }
+    }
+
+    //Returns false if the word was already there.
+    public synchronized boolean add(CharSequence word){
+        int length = word.length();
+        if(length == 0){
+            return false;
+        }
+        ensureDepth(length);
+        int node = 0;
+        for(int i = 0; i < length; i++){
+            node = childOrInsert(node, word.charAt(i));
+        }
+        if(terminal[node]){
+            return false;
+        }
+        terminal[node] = true;
+        wordCount++;
+        return true;
+    }
+
+    public synchronized void clear(){
+        Arrays.fill(firstChild, 0, nodeCount, 0);
+        Arrays.fill(nextSibling, 0, nodeCount, 0);
+        Arrays.fill(terminal, 0, nodeCount, false);
+        nodeCount = 1;
+        wordCount = 0;
+    }
+
+    /*Fills out with at most out.capacity() words which start with prefix, in alphabetical order,
+    * and returns how many. Allocation free.*/
+    public synchronized int complete(CharSequence prefix, Completions out){
+        out.count = 0;
+        int prefixLength = prefix.length();
+        if(prefixLength > path.length){
+            return 0; //Longer than any word we have.
+        }
+        int node = 0;
+        for(int i = 0; i < prefixLength; i++){
+            node = child(node, prefix.charAt(i));
+            if(node == 0){
+                return 0;
+            }
+            path[i] = chars[node];
+        }
+        int limit = out.words.length;
+        if(limit == 0){
+            return 0;
+        }
+
+        /*Depth first, children before siblings, so it is alphabetical. stack[d] is the node at
+        * depth d below the prefix node, and path holds the characters down to it.*/
+        if(terminal[node]){
+            emit(out, prefixLength);
+        }
+        int depth = 0;
+        int current = firstChild[node];
+        while (current != 0 && out.count < limit){
+            stack[depth] = current;
+            path[prefixLength + depth] = chars[current];
+            if(terminal[current]){
+                emit(out, prefixLength + depth + 1);
+                if(out.count == limit){
+                    break;
+                }
+            }
+            if(firstChild[current] != 0){
+                depth++;
+                current = firstChild[current];
+                continue;
+            }
+            //No children, go to the next sibling, or up until some node has one.
+            while (nextSibling[current] == 0 && depth > 0){
+                depth--;
+                current = stack[depth];
+            }
+            current = nextSibling[current];
+        }
+        return out.count;
+    }
+
+    public synchronized int size(){
+        return wordCount;
+    }
+
+    public synchronized int nodeCount(){
+        return nodeCount;
+    }
+
+    //Memory of the node arrays(what is allocated, not only what is used), without object headers.
+    public synchronized long estimatedBytes(){
+        long capacity = chars.length;
+        return capacity * (2 + 4 + 4 + 1) + (stack.length * 4) + (path.length * 2);
+    }
+
+    private void emit(Completions out, int length){
+        StringBuilder word = out.words[out.count++];
+        word.setLength(0);
+        word.append(path, 0, length);
+    }
+
+    private int child(int node, char c){
+        int child = firstChild[node];
+        while (child != 0 && chars[child] < c){
+            child = nextSibling[child];
+        }
+        return child != 0 && chars[child] == c ? child : 0;
+    }
+
+    //Finds the child with c, or inserts it at its sorted place among the siblings.
+    private int childOrInsert(int node, char c){
+        int previous = 0;
+        int child = firstChild[node];
+        while (child != 0 && chars[child] < c){
+            previous = child;
+            child = nextSibling[child];
+        }
+        if(child != 0 && chars[child] == c){
+            return child;
+        }
+        int created = newNode(c);
+        nextSibling[created] = child;
+        if(previous == 0){
+            firstChild[node] = created;
+        }
+        else {
+            nextSibling[previous] = created;
+        }
+        return created;
+    }
+
+    private int newNode(char c){
+        if(nodeCount == chars.length){
+            int capacity = chars.length * 2;
+            chars = Arrays.copyOf(chars, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            terminal = Arrays.copyOf(terminal, capacity);
+        }
+        int node = nodeCount++;
+        chars[node] = c;
+        return node;
+    }
+
+    private void ensureDepth(int length){
+        if(length > path.length){
+            int capacity = Math.max(length, path.length * 2);
+            path = Arrays.copyOf(path, capacity);
+            stack = Arrays.copyOf(stack, capacity);
+        }
+    }
+}
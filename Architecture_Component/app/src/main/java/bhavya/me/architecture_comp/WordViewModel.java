@@ -3,9 +3,16 @@ package bhavya.me.architecture_comp;
 import android.app.Application;
 import android.arch.lifecycle.AndroidViewModel;
 import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.arch.paging.PagedList;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
 import android.support.annotation.NonNull;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*-> This is the class which is Responsible for Caching the LiveData with the Data in the LiveData,
 * so in short ViewModel is responsible for Caching the data in itself and survive Configuration
@@ -29,16 +36,55 @@ import java.util.List;
 * to worry for getting Application context.*/
 public class WordViewModel extends AndroidViewModel {
 
-    private LiveData<List<Word>> mWords;
+    //The search only starts when the user stopped typing for this long.
+    private static final long SEARCH_DEBOUNCE_MILLIS = 150;
+    private static final int SEARCH_LIMIT = 50;
+
+    private LiveData<PagedList<Word>> mWords;
     private WordRepository mWordRepository;
 
+    private final MutableLiveData<List<Word>> mSearchResults = new MutableLiveData<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /*Goes up with every setSearchQuery(), a search only publishes its result if no newer query
+    * came meanwhile, so an old slow search can never overwrite the result of a newer one.*/
+    private final AtomicInteger mSearchGeneration = new AtomicInteger();
+    //Only touched on the main Thread.
+    private String mPendingQuery;
+    private CancellationSignal mRunningSearch;
+
+    //Only made when enableAutocomplete() is called, it keeps every word in memory.
+    private WordTrie mWordTrie;
+
+    private final Runnable mStartSearch = new Runnable() {
+        @Override
+        public void run() {
+            final String query = mPendingQuery;
+            final int generation = mSearchGeneration.get();
+            final CancellationSignal signal = new CancellationSignal();
+            mRunningSearch = signal;
+            mWordRepository.getReadExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        List<Word> words = mWordRepository.search(query, SEARCH_LIMIT, signal);
+                        if(generation == mSearchGeneration.get()){
+                            mSearchResults.postValue(words);
+                        }
+                    } catch (OperationCanceledException e) {
+                        //A newer query came, its search will publish the result.
+                    }
+                }
+            });
+        }
+    };
+
     public WordViewModel(@NonNull Application application) {
         super(application);
         mWordRepository = new WordRepository(application);
         mWords = mWordRepository.getWords();
     }
 
-    public LiveData<List<Word>> getmWords(){
+    public LiveData<PagedList<Word>> getmWords(){
         return mWords;
     }
 
@@ -50,4 +96,62 @@ public class WordViewModel extends AndroidViewModel {
     public void insert(Word word){
         mWordRepository.insert(word);
     }
+
+    /*Work which the Database still has to do after a Migration(see WordBackfill). The Activity
+    * calls it after its first frame, so it never slows down the start of the App.*/
+    public void startBackfills(){
+        mWordRepository.startBackfills();
+    }
+
+    public void deleteAllWords(){
+        mWordRepository.deleteAllWords();
+    }
+
+    /*Optional: keeps all the words in a WordTrie(about 40 bytes per word) so complete() can
+    * answer from memory without any query. It is filled in the background, till then complete()
+    * just finds less or nothing.*/
+    public void enableAutocomplete(){
+        if(mWordTrie == null){
+            mWordTrie = new WordTrie();
+            mWordRepository.loadWordTrie(mWordTrie);
+        }
+    }
+
+    /*Top completions for prefix, as many as out can hold, in alphabetical order. Fast enough to
+    * call on the main Thread on every keystroke and allocates nothing, reuse the same out.
+    * Returns 0 if enableAutocomplete() was not called.*/
+    public int complete(CharSequence prefix, WordTrie.Completions out){
+        if(mWordTrie == null){
+            return 0;
+        }
+        return mWordTrie.complete(prefix, out);
+    }
+
+    public LiveData<List<Word>> getSearchResults(){
+        return mSearchResults;
+    }
+
+    /*Call it from the main Thread on every keystroke. It doesn't query at once: it waits till
+    * nothing was typed for SEARCH_DEBOUNCE_MILLIS, and a search which is still running for an
+    * older input is cancelled inside SQLite, so we never run a query for every single letter.*/
+    public void setSearchQuery(String query){
+        mSearchGeneration.incrementAndGet();
+        mPendingQuery = query;
+        mHandler.removeCallbacks(mStartSearch);
+        if(mRunningSearch != null){
+            mRunningSearch.cancel();
+            mRunningSearch = null;
+        }
+        mHandler.postDelayed(mStartSearch, SEARCH_DEBOUNCE_MILLIS);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        mWordRepository.close();
+        mHandler.removeCallbacks(mStartSearch);
+        if(mRunningSearch != null){
+            mRunningSearch.cancel();
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package bhavya.me.architecture_comp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class DatabaseExecutorsTest {
+
+    //Every test and benchmark opens its own Database, their Threads must not outlive close().
+    @Test(timeout = 10000)
+    public void closeStopsTheDatabaseThreads() throws Exception {
+        WordRoomDatabase database = WordRoomDatabase.inMemory(RuntimeEnvironment.application,
+                new WordRoomDatabase.Config());
+        Thread writer = threadOf(database.getExecutors().writer());
+        Thread reader = threadOf(database.getExecutors().reader());
+
+        database.close();
+
+        writer.join(5000);
+        reader.join(5000);
+        assertFalse(writer.isAlive());
+        assertFalse(reader.isAlive());
+        try {
+            database.getExecutors().writer().execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            fail();
+        } catch (RejectedExecutionException expected) {
+            //Nothing runs on a closed Database.
+        }
+    }
+
+    private static Thread threadOf(Executor executor) throws Exception {
+        FutureTask<Thread> task = new FutureTask<>(new Callable<Thread>() {
+            @Override
+            public Thread call() {
+                return Thread.currentThread();
+            }
+        });
+        executor.execute(task);
+        return task.get(5, TimeUnit.SECONDS);
+    }
+}
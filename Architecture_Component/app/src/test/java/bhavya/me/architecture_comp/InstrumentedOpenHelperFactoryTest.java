@@ -0,0 +1,63 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.persistence.db.SupportSQLiteOpenHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class InstrumentedOpenHelperFactoryTest {
+
+    private WordRoomDatabase database;
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void open() {
+        database = WordRoomDatabase.inMemory(RuntimeEnvironment.application, new WordRoomDatabase.Config());
+    }
+
+    @After
+    public void close() {
+        background.shutdownNow();
+        database.close();
+    }
+
+    //Room asks for the database on every query, that must not allocate a new wrapper each time.
+    @Test
+    public void sameWrapperForEveryCall() {
+        SupportSQLiteOpenHelper helper = database.getOpenHelper();
+        assertSame(helper.getWritableDatabase(), helper.getWritableDatabase());
+        assertSame(helper.getWritableDatabase(), helper.getReadableDatabase());
+    }
+
+    @Test
+    public void daoStatementsAreMeasured() throws Exception {
+        final WordDao dao = database.wordDao();
+        long before = database.getQueryMetrics().getStatementCount();
+        int count = background.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                dao.insertIgnore(new Word("hello"));
+                return dao.count();
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, count);
+        //At least the INSERT and the COUNT(*), Room may run more statements around them.
+        assertTrue(database.getQueryMetrics().getStatementCount() >= before + 2);
+        assertEquals(0, database.getQueryMetrics().getMainThreadCount());
+    }
+}
@@ -0,0 +1,333 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.paging.ItemKeyedDataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/*Benchmarks of the data layer on the JVM, with the real code of the App: Room's generated
+* WordDao_Impl on Robolectric's SQLite, the FTS index, the instrumented open helper, and for the
+* inserts WordRepository with its write-behind buffer and Bloom filter.
+*
+*       ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*WordBenchmarkTest'
+*
+* Without -Pbenchmark it is skipped, it takes a few minutes.
+*
+* -> Every benchmark runs WARMUP_ITERATIONS and then ITERATIONS of ITERATION_MILLIS each, the
+* score is the average time of one operation(us/op, like JMH's avgt), and for the inserts one
+* operation is one word so they can be compared directly.
+*
+* -> Reads:  fullScan(every row in one query, what the old getAllWords() did), pagedScan(every
+*            row through WordDataSource page by page), firstPage(what the user waits for when
+*            the list opens, must not depend on rows), search(2 letter prefix through word_fts),
+*            exists(the check WordRepository makes when the Bloom filter says "maybe"), export
+*            (WordExporter, BINARY). On 1,000 and 100,000 rows.
+*
+* -> Writes: insertTask(one word, one transaction), bulkInsert(insertAll() of BULK_SIZE words),
+*            repositoryInsert(WordRepository.insert() of BURST words and flush()). Every
+*            iteration starts with an empty table.
+*
+* Results are written as JSON in the format of JMH to app/build/reports/benchmark/results.json,
+* keep the file of every release and compare them to catch regressions. The Database is in
+* memory: there is no fsync, so on a device a single insert costs a lot more than here, compare
+* the numbers between releases, not with the device.*/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WordBenchmarkTest {
+
+    private static final int[] ROWS = {1000, 100000};
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 500;
+    //Same as WordRepository.PAGE_SIZE and MAX_BUFFERED_INSERTS.
+    private static final int PAGE_SIZE = 50;
+    private static final int BURST = 100;
+    private static final int BULK_SIZE = 1000;
+    private static final int SEARCH_LIMIT = 20;
+    private static final File RESULTS = new File("build/reports/benchmark/results.json");
+
+    //Room doesn't allow queries on the main Thread, which is the test Thread under Robolectric.
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
+    private final List<String> mResults = new ArrayList<>();
+    //Never reset, so every inserted word is new even after the table was emptied.
+    private int mNext;
+    private int mProbe;
+
+    private interface Operation {
+        //Runs once and returns how many operations that were(words for the inserts).
+        int run() throws Exception;
+    }
+
+    @Before
+    public void onlyWhenAsked() {
+        assumeTrue("Run with -Pbenchmark", Boolean.getBoolean("benchmark"));
+    }
+
+    @After
+    public void shutdown() {
+        background.shutdownNow();
+    }
+
+    @Test(timeout = 1800000)
+    public void benchmarkDataLayer() throws Exception {
+        background.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for(int rows : ROWS){
+                    reads(rows);
+                }
+                writes();
+                return null;
+            }
+        }).get();
+        writeResults();
+    }
+
+    private void reads(final int rows) throws Exception {
+        WordRoomDatabase database = WordRoomDatabase.inMemory(RuntimeEnvironment.application,
+                new WordRoomDatabase.Config());
+        try {
+            final WordDao dao = database.wordDao();
+            List<Word> chunk = new ArrayList<>(BULK_SIZE);
+            for(int i = 0; i < rows; i++){
+                chunk.add(new Word(word(i)));
+                if(chunk.size() == BULK_SIZE || i == rows - 1){
+                    dao.insertAll(chunk);
+                    chunk.clear();
+                }
+            }
+            final WordDataSource dataSource = new WordDataSource(database);
+
+            measure("fullScan", rows, null, new Operation() {
+                @Override
+                public int run() {
+                    assertEquals(rows, dao.getFirstWords(rows).size());
+                    return 1;
+                }
+            });
+            measure("pagedScan", rows, null, new Operation() {
+                @Override
+                public int run() {
+                    Page page = new Page();
+                    dataSource.loadInitial(new ItemKeyedDataSource.LoadInitialParams<String>(
+                            null, PAGE_SIZE, false), page);
+                    int total = page.words.size();
+                    while (page.words.size() == PAGE_SIZE){
+                        String last = dataSource.getKey(page.words.get(PAGE_SIZE - 1));
+                        dataSource.loadAfter(new ItemKeyedDataSource.LoadParams<String>(last, PAGE_SIZE), page);
+                        total += page.words.size();
+                    }
+                    assertEquals(rows, total);
+                    return 1;
+                }
+            });
+            measure("firstPage", rows, null, new Operation() {
+                @Override
+                public int run() {
+                    Page page = new Page();
+                    dataSource.loadInitial(new ItemKeyedDataSource.LoadInitialParams<String>(
+                            null, PAGE_SIZE, false), page);
+                    return 1;
+                }
+            });
+            measure("search", rows, null, new Operation() {
+                @Override
+                public int run() {
+                    //A different prefix every time, so we don't measure only one lucky(or empty) prefix.
+                    String word = word(mProbe++ & Integer.MAX_VALUE);
+                    dao.search(word.substring(0, Math.min(2, word.length())), SEARCH_LIMIT);
+                    return 1;
+                }
+            });
+            measure("exists", rows, null, new Operation() {
+                @Override
+                public int run() {
+                    //Every second probe is a word which is in the table(index < rows), the others are not.
+                    int i = mProbe++ & Integer.MAX_VALUE;
+                    dao.exists(word((i / 2) % rows + ((i & 1) == 0 ? 0 : rows)));
+                    return 1;
+                }
+            });
+            final WordExporter exporter = new WordExporter(dao);
+            measure("export", rows, null, new Operation() {
+                @Override
+                public int run() throws IOException {
+                    assertEquals(rows, exporter.export(new NullOutputStream(), WordExporter.Format.BINARY));
+                    return 1;
+                }
+            });
+        } finally {
+            database.close();
+        }
+    }
+
+    private void writes() throws Exception {
+        WordRoomDatabase database = WordRoomDatabase.inMemory(RuntimeEnvironment.application,
+                new WordRoomDatabase.Config());
+        final WordRepository repository = new WordRepository(database);
+        try {
+            final WordDao dao = database.wordDao();
+            //Through the Repository, so its Bloom filter is emptied too.
+            Runnable emptyTable = new Runnable() {
+                @Override
+                public void run() {
+                    repository.deleteAllWords();
+                    try {
+                        repository.flush();
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            };
+
+            measure("insertTask", 0, emptyTable, new Operation() {
+                @Override
+                public int run() {
+                    dao.insertTask(new Word(word(mNext++)));
+                    return 1;
+                }
+            });
+            measure("bulkInsert", 0, emptyTable, new Operation() {
+                @Override
+                public int run() {
+                    List<Word> words = new ArrayList<>(BULK_SIZE);
+                    for(int i = 0; i < BULK_SIZE; i++){
+                        words.add(new Word(word(mNext++)));
+                    }
+                    dao.insertAll(words);
+                    return BULK_SIZE;
+                }
+            });
+            measure("repositoryInsert", 0, emptyTable, new Operation() {
+                @Override
+                public int run() throws InterruptedException {
+                    for(int i = 0; i < BURST; i++){
+                        repository.insert(new Word(word(mNext++)));
+                    }
+                    repository.flush();
+                    return BURST;
+                }
+            });
+            System.out.println("Statements run by the write benchmarks: "
+                    + database.getQueryMetrics().getStatementCount());
+        } finally {
+            repository.close();
+            repository.flush();
+            database.close();
+        }
+    }
+
+    //rows 0 means the benchmark has no rows parameter.
+    private void measure(String name, int rows, Runnable beforeIteration, Operation operation) throws Exception {
+        double[] scores = new double[ITERATIONS];
+        long iterationNanos = TimeUnit.MILLISECONDS.toNanos(ITERATION_MILLIS);
+        for(int i = -WARMUP_ITERATIONS; i < ITERATIONS; i++){
+            if(beforeIteration != null){
+                beforeIteration.run();
+            }
+            long operations = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                operations += operation.run();
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < iterationNanos);
+            if(i >= 0){
+                scores[i] = elapsed / 1000.0 / operations;
+            }
+        }
+        double sum = 0;
+        StringBuilder rawData = new StringBuilder();
+        for(double score : scores){
+            sum += score;
+            rawData.append(rawData.length() == 0 ? "" : ",").append(score);
+        }
+        double score = sum / scores.length;
+        System.out.println(name + (rows > 0 ? "(rows " + rows + ")" : "") + ": " + score + " us/op");
+        mResults.add("{\"benchmark\":\"" + WordBenchmarkTest.class.getName() + "." + name + "\","
+                + "\"mode\":\"avgt\","
+                + "\"warmupIterations\":" + WARMUP_ITERATIONS + ",\"measurementIterations\":" + ITERATIONS + ","
+                + (rows > 0 ? "\"params\":{\"rows\":\"" + rows + "\"}," : "")
+                + "\"primaryMetric\":{\"score\":" + score + ",\"scoreUnit\":\"us/op\","
+                + "\"rawData\":[[" + rawData + "]]}}");
+    }
+
+    private void writeResults() throws IOException {
+        File directory = RESULTS.getParentFile();
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        Writer writer = new OutputStreamWriter(new FileOutputStream(RESULTS), "UTF-8");
+        try {
+            writer.write("[\n");
+            for(int i = 0; i < mResults.size(); i++){
+                writer.write(mResults.get(i));
+                writer.write(i < mResults.size() - 1 ? ",\n" : "\n");
+            }
+            writer.write("]\n");
+        } finally {
+            writer.close();
+        }
+        System.out.println("Results written to " + RESULTS.getAbsolutePath());
+    }
+
+    /*The index-th word of the test data: index scrambled(times an odd number, so no two indexes
+    * give the same word) and written with the letters a-z. So the words are unique, spread over
+    * all prefixes like real words, and the same on every run.*/
+    private static String word(int index){
+        long value = (index * 0x9E3779B1) & 0xFFFFFFFFL;
+        char[] letters = new char[7];
+        int length = 0;
+        do {
+            letters[length++] = (char) ('a' + value % 26);
+            value /= 26;
+        } while (value != 0);
+        return new String(letters, 0, length);
+    }
+
+    //The words of the last load of WordDataSource.
+    private static class Page extends ItemKeyedDataSource.LoadInitialCallback<Word> {
+
+        List<Word> words;
+
+        @Override
+        public void onResult(List<Word> data, int position, int totalCount) {
+            words = data;
+        }
+
+        @Override
+        public void onResult(List<Word> data) {
+            words = data;
+        }
+    }
+
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.Room;
+import android.arch.persistence.room.RoomDatabase;
+import android.support.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/*Cold start of the Database: how long from building it till the first page of words can be
+* read, on a real file, with the old onOpen() callback(delete all the words, insert "Hello" and
+* "World" again) and with the seed in onCreate() which WordRoomDatabase has now.
+*
+* -> The old callback ran in an AsyncTask right after the open. Here it runs inside onOpen(),
+* so its writes are counted in the start, which is what they cost the first screen anyway:
+* the list is only right once they are done.
+*
+* -> Before every start the user has USER_WORDS words, the old callback deletes them all(and
+* their FTS entries) on every start, the new one doesn't write anything after the first one.*/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WordColdStartTest {
+
+    private static final String OLD_DB = "cold-start-old.db";
+    private static final String NEW_DB = "cold-start-new.db";
+    private static final int USER_WORDS = 10000;
+    private static final int STARTS = 5;
+    //Same as WordRepository.PAGE_SIZE.
+    private static final int PAGE_SIZE = 50;
+
+    //Room doesn't allow queries on the main Thread, which is the test Thread under Robolectric.
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutdown() {
+        background.shutdownNow();
+        RuntimeEnvironment.application.deleteDatabase(OLD_DB);
+        RuntimeEnvironment.application.deleteDatabase(NEW_DB);
+    }
+
+    @Test(timeout = 300000)
+    public void startWithSeedInOnCreateAgainstOldOnOpenCallback() throws Exception {
+        long oldInstall = start(true);
+        long newInstall = start(false);
+
+        long[] oldRestarts = new long[STARTS];
+        long[] newRestarts = new long[STARTS];
+        for(int i = 0; i < STARTS; i++){
+            addUserWords(true);
+            oldRestarts[i] = start(true);
+            addUserWords(false);
+            newRestarts[i] = start(false);
+        }
+        long oldRestart = median(oldRestarts);
+        long newRestart = median(newRestarts);
+
+        System.out.println("First start: old callback " + micros(oldInstall) + " us, seed in onCreate "
+                + micros(newInstall) + " us. Start with " + USER_WORDS + " words(median of " + STARTS
+                + "): old callback " + micros(oldRestart) + " us, seed in onCreate " + micros(newRestart) + " us");
+        //No writes at all on a restart, against deleting every word.
+        assertTrue("restart " + micros(newRestart) + " us, old " + micros(oldRestart) + " us",
+                newRestart < oldRestart);
+        //And the words of the user are still there, the old callback left only the seed words.
+        assertEquals(USER_WORDS + 2, count(false));
+        assertEquals(2, count(true));
+    }
+
+    //Nanoseconds from building the Database till the first page is read, then it is closed.
+    private long start(boolean old) throws Exception {
+        long begin = System.nanoTime();
+        WordRoomDatabase database = open(old);
+        try {
+            final WordDao dao = database.wordDao();
+            onBackground(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return dao.getFirstWords(PAGE_SIZE).size();
+                }
+            });
+            return System.nanoTime() - begin;
+        } finally {
+            database.close();
+        }
+    }
+
+    private void addUserWords(boolean old) throws Exception {
+        WordRoomDatabase database = open(old);
+        try {
+            final WordDao dao = database.wordDao();
+            onBackground(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    List<Word> words = new ArrayList<>(USER_WORDS);
+                    for(int i = 0; i < USER_WORDS; i++){
+                        words.add(new Word("user" + i));
+                    }
+                    //insertAll() skips the words which are still there.
+                    dao.insertAll(words);
+                    return words.size();
+                }
+            });
+        } finally {
+            database.close();
+        }
+    }
+
+    private int count(boolean old) throws Exception {
+        WordRoomDatabase database = open(old);
+        try {
+            final WordDao dao = database.wordDao();
+            return onBackground(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return dao.count();
+                }
+            });
+        } finally {
+            database.close();
+        }
+    }
+
+    private static WordRoomDatabase open(boolean old){
+        if(!old){
+            return WordRoomDatabase.open(RuntimeEnvironment.application, NEW_DB, new WordRoomDatabase.Config(), true);
+        }
+        //What getDatabase() did before the seed moved to onCreate(), on today's schema.
+        return Room.databaseBuilder(RuntimeEnvironment.application, WordRoomDatabase.class, OLD_DB)
+                .addMigrations(WordRoomDatabase.ALL_MIGRATIONS)
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                        super.onOpen(db);
+                        WordSearchIndex.create(db);
+                        db.execSQL("DELETE FROM word_table");
+                        db.execSQL("INSERT INTO word_table (word, created_at, frequency) VALUES ('Hello', 0, 0)");
+                        db.execSQL("INSERT INTO word_table (word, created_at, frequency) VALUES ('World', 0, 0)");
+                    }
+                })
+                .build();
+    }
+
+    private <T> T onBackground(Callable<T> task) throws Exception {
+        return background.submit(task).get(60, TimeUnit.SECONDS);
+    }
+
+    private static long median(long[] values){
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long micros(long nanos){
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
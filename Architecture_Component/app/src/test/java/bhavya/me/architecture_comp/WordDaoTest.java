@@ -0,0 +1,120 @@
+package bhavya.me.architecture_comp;
+
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/*WordDao on a real in-memory Room Database, mostly what the conflict strategies do to word_fts.
+* Room doesn't allow queries on the main Thread(the test Thread is it under Robolectric), so they
+* run on a Thread of their own.*/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WordDaoTest {
+
+    private WordRoomDatabase database;
+    private WordDao dao;
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void open() {
+        database = WordRoomDatabase.inMemory(RuntimeEnvironment.application, new WordRoomDatabase.Config());
+        dao = database.wordDao();
+    }
+
+    @After
+    public void close() {
+        background.shutdownNow();
+        database.close();
+    }
+
+    @Test
+    public void replaceKeepsTheRowAndItsSearchEntry() throws Exception {
+        final Word replacement = new Word("hello");
+        replacement.setFrequency(7);
+        List<Word> found = onBackground(new Callable<List<Word>>() {
+            @Override
+            public List<Word> call() {
+                dao.insert(new Word("hello"), WordDao.Conflict.REPORT);
+                dao.insert(replacement, WordDao.Conflict.REPLACE);
+                return dao.search("hel", 10);
+            }
+        });
+
+        assertEquals(1, found.size());
+        assertEquals("hello", found.get(0).getWord());
+        assertEquals(1, (int) onBackground(countFts("hel*")));
+        assertEquals(7, onBackground(new Callable<Word>() {
+            @Override
+            public Word call() {
+                return dao.getFirstWords(1).get(0);
+            }
+        }).getFrequency());
+    }
+
+    //A REPLACE of a word which is not there yet is a normal insert.
+    @Test
+    public void replaceOfNewWordInserts() throws Exception {
+        List<Word> found = onBackground(new Callable<List<Word>>() {
+            @Override
+            public List<Word> call() {
+                dao.insert(new Word("world"), WordDao.Conflict.REPLACE);
+                return dao.search("wor", 10);
+            }
+        });
+
+        assertEquals(1, found.size());
+        assertEquals(1, (int) onBackground(countFts("wor*")));
+    }
+
+    @Test
+    public void deleteAllAlsoEmptiesTheSearchIndex() throws Exception {
+        onBackground(new Callable<Void>() {
+            @Override
+            public Void call() {
+                dao.insert(new Word("hello"), WordDao.Conflict.REPORT);
+                dao.insert(new Word("help"), WordDao.Conflict.REPORT);
+                dao.insert(new Word("help"), WordDao.Conflict.REPLACE);
+                dao.deleteAllWords();
+                return null;
+            }
+        });
+
+        assertEquals(0, (int) onBackground(countFts("hel*")));
+    }
+
+    /*Index entries(docids) which match, read straight from word_fts. With the old INSERT OR
+    * REPLACE the docid of the deleted row stayed there, so a replaced word was counted twice.*/
+    private Callable<Integer> countFts(final String match){
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                Cursor cursor = database.getOpenHelper().getReadableDatabase().query(
+                        "SELECT docid FROM " + WordSearchIndex.TABLE + " WHERE "
+                                + WordSearchIndex.TABLE + " MATCH ?", new Object[]{match});
+                try {
+                    return cursor.getCount();
+                } finally {
+                    cursor.close();
+                }
+            }
+        };
+    }
+
+    private <T> T onBackground(Callable<T> task) throws Exception {
+        return background.submit(task).get(10, TimeUnit.SECONDS);
+    }
+}
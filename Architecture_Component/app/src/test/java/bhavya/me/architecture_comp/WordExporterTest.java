@@ -0,0 +1,253 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.database.Cursor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/*WordExporter against a fake WordDao which makes its words on the fly, so no Database(and no
+* Robolectric) is needed and the table can be as big as we like without using heap itself.
+*
+* -> The 2,000,000 word export runs in a JVM of its own with a small -Xmx. As List<Word> those
+* words would need well over 100 MB, streaming them window by window needs almost nothing.*/
+public class WordExporterTest {
+
+    private static final int ROWS = 2000000;
+    private static final String MAX_HEAP = "-Xmx32m";
+
+    @Test
+    public void textIsOneWordPerLine() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2500, new WordExporter(new FakeWordDao(2500)).export(out, WordExporter.Format.TEXT));
+
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals(2500, lines.length);
+        assertEquals(FakeWordDao.word(0), lines[0]);
+        assertEquals(FakeWordDao.word(2499), lines[2499]);
+    }
+
+    @Test
+    public void binaryIsMagicThenLengthPrefixedWords() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2500, new WordExporter(new FakeWordDao(2500)).export(out, WordExporter.Format.BINARY));
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        byte[] magic = new byte[WordExporter.MAGIC.length];
+        assertEquals(magic.length, in.read(magic));
+        assertArrayEquals(WordExporter.MAGIC, magic);
+        int words = 0;
+        int length;
+        while ((length = readVarint(in)) != 0){
+            byte[] word = new byte[length];
+            assertEquals(length, in.read(word));
+            assertEquals(FakeWordDao.word(words), new String(word, "UTF-8"));
+            words++;
+        }
+        assertEquals(2500, words);
+        assertEquals(-1, in.read());
+    }
+
+    @Test(timeout = 120000)
+    public void twoMillionWordsExportInSmallHeap() throws Exception {
+        Process process = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                MAX_HEAP, "-cp", classPath(WordExporterTest.class, WordExporter.class, Cursor.class,
+                SupportSQLiteQuery.class), Export.class.getName(), String.valueOf(ROWS))
+                .redirectErrorStream(true)
+                .start();
+        String output = read(process.getInputStream());
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+
+        System.out.println(output.trim());
+        assertEquals(output, 0, process.exitValue());
+        assertTrue(output, output.startsWith("Exported " + ROWS + " words"));
+    }
+
+    /*main() of the JVM with MAX_HEAP, an OutOfMemoryError ends it with exit value 1. Exports
+    * to a stream which only counts, so the bytes don't stay in the heap either.*/
+    public static class Export {
+
+        public static void main(String[] args) throws IOException {
+            int rows = Integer.parseInt(args[0]);
+            final long[] bytes = new long[1];
+            OutputStream counting = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    bytes[0]++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    bytes[0] += len;
+                }
+            };
+            long start = System.nanoTime();
+            int count = new WordExporter(new FakeWordDao(rows)).export(counting, WordExporter.Format.TEXT);
+            Runtime runtime = Runtime.getRuntime();
+            System.out.println("Exported " + count + " words, " + bytes[0] + " bytes in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms, max heap "
+                    + runtime.maxMemory() / (1024 * 1024) + " MB");
+        }
+    }
+
+    /*Words "word0000000", "word0000001"... in this order, made when the Cursor is read.
+    * Only wordsAfterCursor() is used by WordExporter.*/
+    static class FakeWordDao extends WordDao {
+
+        private final int mRows;
+
+        FakeWordDao(int rows) {
+            this.mRows = rows;
+        }
+
+        static String word(int index){
+            String number = String.valueOf(index);
+            StringBuilder word = new StringBuilder("word");
+            for(int i = number.length(); i < 7; i++){
+                word.append('0');
+            }
+            return word.append(number).toString();
+        }
+
+        @Override
+        public Cursor wordsAfterCursor(String after, int limit) {
+            int from = after.isEmpty() ? 0 : Integer.parseInt(after.substring(4)) + 1;
+            return windowCursor(from, Math.min(mRows, from + limit));
+        }
+
+        //A Cursor over the words [from, to), only what WordExporter calls is there.
+        private static Cursor windowCursor(final int from, final int to){
+            return (Cursor) Proxy.newProxyInstance(Cursor.class.getClassLoader(), new Class[]{Cursor.class},
+                    new InvocationHandler() {
+                        private int position = from - 1;
+
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            switch (method.getName()){
+                                case "moveToNext":
+                                    return ++position < to;
+                                case "getString":
+                                    return word(position);
+                                case "close":
+                                    return null;
+                                default:
+                                    throw new UnsupportedOperationException(method.getName());
+                            }
+                        }
+                    });
+        }
+
+        @Override
+        public void insertTask(Word word) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long insertIgnore(Word word) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        int updateColumns(String word, long createdAt, int frequency) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean exists(String word) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int count() {
+            return mRows;
+        }
+
+        @Override
+        public void insertAll(List<Word> words) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Word> getFirstWords(int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Word> getWordsFrom(String key, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Word> getWordsAfter(String key, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Word> getWordsBefore(String key, int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteAllWords() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        List<Word> rawQuery(SupportSQLiteQuery query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int backfillCreatedAt(long createdAt, int limit) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /*Gradle's test worker doesn't have the test classpath in java.class.path, so it is made from
+    * where the classes which the export needs were loaded from.*/
+    private static String classPath(Class<?>... classes) throws Exception {
+        StringBuilder path = new StringBuilder();
+        for(Class<?> type : classes){
+            if(path.length() > 0){
+                path.append(File.pathSeparator);
+            }
+            path.append(new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+        }
+        return path.toString();
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.read();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static String read(InputStream in){
+        Scanner scanner = new Scanner(in, "UTF-8");
+        try {
+            return scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
+        } finally {
+            scanner.close();
+        }
+    }
+}
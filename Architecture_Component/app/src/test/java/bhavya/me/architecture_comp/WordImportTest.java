@@ -0,0 +1,209 @@
+package bhavya.me.architecture_comp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*WordImport against a real in-memory Room Database on the JVM(Robolectric gives the SQLite).
+* Everything touching the Database runs on its writer Thread, same as in the App.*/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WordImportTest {
+
+    private static final int ROWS = 10000;
+
+    private WordRoomDatabase database;
+    private WordDao dao;
+    private Executor writer;
+
+    @Before
+    public void open() {
+        database = WordRoomDatabase.inMemory(RuntimeEnvironment.application, new WordRoomDatabase.Config());
+        dao = database.wordDao();
+        writer = database.getExecutors().writer();
+    }
+
+    @After
+    public void close() {
+        database.close();
+    }
+
+    /*Rows per second of the old path(insertTask(), one transaction per word) and of
+    * importWords()(insertAll(), one transaction per chunk). Printed, and the batch must win.*/
+    @Test(timeout = 300000)
+    public void benchmarkBatchAgainstPerWordInserts() throws Exception {
+        //First round only warms up the JIT and SQLite.
+        perWordRowsPerSecond();
+        importRowsPerSecond(1000);
+
+        long perWord = perWordRowsPerSecond();
+        long chunk100 = importRowsPerSecond(100);
+        long chunk1000 = importRowsPerSecond(1000);
+
+        System.out.println("Rows/s for " + ROWS + " words: insertTask() per word " + perWord
+                + ", import chunk 100 " + chunk100 + ", import chunk 1000 " + chunk1000);
+        assertTrue("chunk 1000 " + chunk1000 + " rows/s, per word " + perWord + " rows/s",
+                chunk1000 > perWord);
+    }
+
+    /*One chunk per run(): a write given while the import runs goes in right after the current
+    * chunk, not after the whole import.*/
+    @Test(timeout = 30000)
+    public void otherWriteRunsBetweenChunks() throws Exception {
+        final AtomicInteger importedWhenOtherWriteRan = new AtomicInteger(-1);
+        final WordImport[] running = new WordImport[1];
+        Finished finished = new Finished() {
+            @Override
+            public void onProgress(int imported) {
+                if(imported == 100){
+                    writer.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            importedWhenOtherWriteRan.set(running[0].getImportedCount());
+                        }
+                    });
+                }
+            }
+        };
+        running[0] = newImport(words(1000), 100, finished);
+        writer.execute(running[0]);
+
+        finished.await(20);
+        assertEquals(100, importedWhenOtherWriteRan.get());
+        assertEquals(1000, finished.imported);
+        assertFalse(finished.cancelled);
+        assertEquals(1000, countOnWriter());
+    }
+
+    @Test(timeout = 30000)
+    public void cancelStopsAfterTheRunningChunk() throws Exception {
+        final WordImport[] running = new WordImport[1];
+        Finished finished = new Finished() {
+            @Override
+            public void onProgress(int imported) {
+                running[0].cancel();
+            }
+        };
+        running[0] = newImport(words(1000), 100, finished);
+        writer.execute(running[0]);
+
+        finished.await(20);
+        assertTrue(finished.cancelled);
+        assertEquals(100, finished.imported);
+        assertEquals(100, countOnWriter());
+    }
+
+    private long perWordRowsPerSecond() throws Exception {
+        final List<String> words = words(ROWS);
+        final CountDownLatch done = new CountDownLatch(1);
+        long start = System.nanoTime();
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                for(String word : words){
+                    dao.insertTask(new Word(word));
+                }
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(120, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+        deleteAllOnWriter();
+        return ROWS * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private long importRowsPerSecond(int chunkSize) throws Exception {
+        Finished finished = new Finished();
+        long start = System.nanoTime();
+        writer.execute(newImport(words(ROWS), chunkSize, finished));
+        finished.await(120);
+        long elapsed = System.nanoTime() - start;
+        assertEquals(ROWS, finished.imported);
+        deleteAllOnWriter();
+        return ROWS * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    //Same as WordRepository.importWords() makes it, without the Repository around it.
+    private WordImport newImport(List<String> words, int chunkSize, WordImport.Listener listener){
+        return new WordImport(dao, words.iterator(), chunkSize, listener, null, writer);
+    }
+
+    private int countOnWriter() throws InterruptedException {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                count.set(dao.count());
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return count.get();
+    }
+
+    private void deleteAllOnWriter() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                dao.deleteAllWords();
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+    }
+
+    private static List<String> words(int count){
+        List<String> words = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            words.add("word" + i);
+        }
+        return words;
+    }
+
+    private static class Finished implements WordImport.Listener {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile int imported = -1;
+        volatile boolean cancelled;
+        volatile Exception error;
+
+        @Override
+        public void onProgress(int imported) {
+        }
+
+        @Override
+        public void onFinished(int imported, boolean cancelled) {
+            this.imported = imported;
+            this.cancelled = cancelled;
+            done.countDown();
+        }
+
+        @Override
+        public void onError(int imported, Exception e) {
+            this.error = e;
+            done.countDown();
+        }
+
+        void await(long seconds) throws Exception {
+            assertTrue(done.await(seconds, TimeUnit.SECONDS));
+            if(error != null){
+                throw error;
+            }
+        }
+    }
+}
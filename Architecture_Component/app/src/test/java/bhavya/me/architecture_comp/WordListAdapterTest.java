@@ -0,0 +1,118 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.paging.PagedList;
+import android.arch.paging.PositionalDataSource;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/*How many rows WordListAdapter binds for a new list, on a real RecyclerView of the size of a
+* phone screen. With notifyDataSetChanged() every visible row was bound again for every new list,
+* with the diff only the row which was added is.*/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WordListAdapterTest {
+
+    private static final int ROWS = 10000;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int PAGE_SIZE = 50;
+
+    //Pages are loaded right away on the calling Thread, so build() returns a loaded list.
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test(timeout = 30000)
+    public void addingOneWordBindsOnlyThatRow() throws Exception {
+        WordListAdapter adapter = new WordListAdapter(RuntimeEnvironment.application);
+        RecyclerView recyclerView = new RecyclerView(RuntimeEnvironment.application);
+        recyclerView.setLayoutManager(new LinearLayoutManager(RuntimeEnvironment.application));
+        //No animations, so one layout pass puts every row where it ends up.
+        recyclerView.setItemAnimator(null);
+        recyclerView.setAdapter(adapter);
+
+        List<Word> words = new ArrayList<>(ROWS + 1);
+        for(int i = 0; i < ROWS; i++){
+            words.add(new Word(String.format("word%05d", i)));
+        }
+        submitAndLayout(adapter, recyclerView, pagedList(words));
+        int visible = recyclerView.getChildCount();
+        int firstListBinds = adapter.getBindCount();
+        assertTrue("visible rows " + visible, visible > 0 && visible < ROWS / 100);
+        //The first list has nothing to diff against, only the visible rows are bound.
+        assertTrue("binds for the first list " + firstListBinds, firstListBinds <= visible + 1);
+
+        /*Between the 5th and the 6th row, so the new row is on the screen. (At position 0 it would
+        * be above the screen, LinearLayoutManager keeps the first visible row where it was.)*/
+        List<Word> oneMore = new ArrayList<>(words);
+        oneMore.add(5, new Word("word00004a"));
+        submitAndLayout(adapter, recyclerView, pagedList(oneMore));
+        int binds = adapter.getBindCount() - firstListBinds;
+
+        System.out.println("One word added to " + ROWS + ": " + binds + " binds, "
+                + visible + " rows visible");
+        assertEquals(ROWS + 1, adapter.getItemCount());
+        assertTrue("binds for one added word " + binds, binds >= 1 && binds <= 2);
+        assertTrue(binds < visible);
+    }
+
+    private static PagedList<Word> pagedList(final List<Word> words){
+        PositionalDataSource<Word> dataSource = new PositionalDataSource<Word>() {
+            @Override
+            public void loadInitial(@NonNull LoadInitialParams params, @NonNull LoadInitialCallback<Word> callback) {
+                int position = computeInitialLoadPosition(params, words.size());
+                int size = computeInitialLoadSize(params, position, words.size());
+                callback.onResult(words.subList(position, position + size), position, words.size());
+            }
+
+            @Override
+            public void loadRange(@NonNull LoadRangeParams params, @NonNull LoadRangeCallback<Word> callback) {
+                int end = Math.min(words.size(), params.startPosition + params.loadSize);
+                callback.onResult(params.startPosition < end
+                        ? words.subList(params.startPosition, end)
+                        : Collections.<Word>emptyList());
+            }
+        };
+        return new PagedList.Builder<>(dataSource, new PagedList.Config.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setEnablePlaceholders(true)
+                .build())
+                .setNotifyExecutor(DIRECT)
+                .setFetchExecutor(DIRECT)
+                .build();
+    }
+
+    /*The diff runs on a background Thread and its result is posted to the main Looper, so the
+    * main Looper is run till the adapter shows the new list, then the RecyclerView is laid out
+    * like the next frame would do.*/
+    private static void submitAndLayout(WordListAdapter adapter, RecyclerView recyclerView,
+                                        PagedList<Word> words) throws InterruptedException {
+        adapter.setWords(words);
+        while (adapter.getCurrentList() != words){
+            Thread.sleep(1);
+            ShadowLooper.runUiThreadTasks();
+        }
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+}
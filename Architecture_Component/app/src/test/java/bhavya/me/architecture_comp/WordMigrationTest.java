@@ -0,0 +1,224 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteOpenHelper;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
+import android.database.Cursor;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*MIGRATION_1_2 on a version 1 Database file with 1,000,000 words, on the JVM.
+*
+* -> The version 1 file is made from the exported schemas/.../1.json(createSql and
+* setupQueries), so it is exactly what Room 1 made on the devices. Gradle runs the unit tests
+* in the module directory, that's where the relative path starts.
+*
+* -> The Migration doesn't rewrite the rows, they are filled afterwards in chunks by
+* WordBackfill. Its time still grows with the rows: ADD COLUMN doesn't touch them, but each
+* CREATE INDEX reads and sorts all of them(about half a second for 1M rows on a laptop), and
+* the first query waits for that. What it must never do is the much bigger cost of rewriting
+* every row, so it is compared with exactly that on the same file.*/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WordMigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+    private static final File SCHEMAS = new File("schemas/" + WordRoomDatabase.class.getCanonicalName());
+    private static final int ROWS = 1000000;
+
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
+    private WordRoomDatabase database;
+
+    @Before
+    public void createVersion1() throws Exception {
+        final JSONObject schema = new JSONObject(read(new File(SCHEMAS, "1.json"))).getJSONObject("database");
+        SupportSQLiteOpenHelper helper = openHelper(new SupportSQLiteOpenHelper.Callback(1) {
+            @Override
+            public void onCreate(SupportSQLiteDatabase db) {
+                try {
+                    JSONArray entities = schema.getJSONArray("entities");
+                    for(int i = 0; i < entities.length(); i++){
+                        JSONObject entity = entities.getJSONObject(i);
+                        db.execSQL(entity.getString("createSql")
+                                .replace("${TABLE_NAME}", entity.getString("tableName")));
+                    }
+                    JSONArray setupQueries = schema.getJSONArray("setupQueries");
+                    for(int i = 0; i < setupQueries.length(); i++){
+                        db.execSQL(setupQueries.getString(i));
+                    }
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+                SupportSQLiteStatement insert = db.compileStatement("INSERT INTO word_table (word) VALUES (?)");
+                for(int i = 0; i < ROWS; i++){
+                    insert.bindString(1, "word" + i);
+                    insert.executeInsert();
+                }
+            }
+
+            @Override
+            public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        });
+        //onCreate() runs in one transaction, inside the first getWritableDatabase().
+        helper.getWritableDatabase();
+        helper.close();
+    }
+
+    @After
+    public void shutdown() {
+        background.shutdownNow();
+        if(database != null){
+            database.close();
+        }
+        RuntimeEnvironment.application.deleteDatabase(TEST_DB);
+    }
+
+    /*Only MIGRATION_1_2 itself, on the plain file without Room around it. Then, on the migrated
+    * file, what filling the new columns inside the Migration would have cost: an UPDATE of every
+    * row, which also has to update both new indexes. It is rolled back, the time is all we want.*/
+    @Test(timeout = 300000)
+    public void migrationCostsLessThanRewritingEveryRow() {
+        final long[] migrationNanos = new long[1];
+        SupportSQLiteOpenHelper helper = openHelper(new SupportSQLiteOpenHelper.Callback(2) {
+            @Override
+            public void onCreate(SupportSQLiteDatabase db) {
+                fail("The version 1 file is already there");
+            }
+
+            @Override
+            public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                long start = System.nanoTime();
+                WordRoomDatabase.MIGRATION_1_2.migrate(db);
+                migrationNanos[0] = System.nanoTime() - start;
+            }
+        });
+        SupportSQLiteDatabase db = helper.getWritableDatabase();
+        try {
+            assertEquals(ROWS, count(db, "SELECT COUNT(*) FROM word_table WHERE created_at = 0"));
+
+            long rewriteNanos;
+            db.beginTransaction();
+            try {
+                long start = System.nanoTime();
+                db.execSQL("UPDATE word_table SET created_at = 1, frequency = 1");
+                rewriteNanos = System.nanoTime() - start;
+            } finally {
+                db.endTransaction();
+            }
+
+            long migrationMillis = TimeUnit.NANOSECONDS.toMillis(migrationNanos[0]);
+            long rewriteMillis = TimeUnit.NANOSECONDS.toMillis(rewriteNanos);
+            System.out.println("MIGRATION_1_2 of " + ROWS + " rows: " + migrationMillis
+                    + " ms, rewriting every row: " + rewriteMillis + " ms");
+            assertTrue("MIGRATION_1_2 took " + migrationMillis + " ms, rewriting every row "
+                    + rewriteMillis + " ms", migrationNanos[0] < rewriteNanos);
+        } finally {
+            helper.close();
+        }
+    }
+
+    /*The whole way of the App: Room runs the Migrations and checks the result against the
+    * entities, the FTS index is built, and then WordBackfill fills created_at chunk by chunk.*/
+    @Test(timeout = 600000)
+    public void appOpensMigratedDatabaseAndBackfills() throws Exception {
+        database = WordRoomDatabase.open(RuntimeEnvironment.application, TEST_DB, new WordRoomDatabase.Config());
+        final WordDao dao = database.wordDao();
+        long start = System.nanoTime();
+        int count = onBackground(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return dao.count();
+            }
+        });
+        System.out.println("First query after the update(Migration and FTS index) of " + ROWS + " rows: "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        assertEquals(ROWS, count);
+
+        start = System.nanoTime();
+        database.startBackfills();
+        //WordBackfill gives itself to the writer again after every chunk, so ask till it's done.
+        while (countOnWriter("SELECT COUNT(*) FROM word_table WHERE created_at = 0") > 0){
+            Thread.sleep(50);
+        }
+        System.out.println("Backfill of " + ROWS + " rows: "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+
+        //The backfill only SETs created_at, the index still finds the words.
+        List<Word> found = onBackground(new Callable<List<Word>>() {
+            @Override
+            public List<Word> call() {
+                return dao.search("word99999", 10);
+            }
+        });
+        assertFalse(found.isEmpty());
+    }
+
+    //On the writer, between two chunks of the backfill.
+    private int countOnWriter(final String sql) throws InterruptedException {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        database.getExecutors().writer().execute(new Runnable() {
+            @Override
+            public void run() {
+                count.set(count(database.getOpenHelper().getWritableDatabase(), sql));
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        return count.get();
+    }
+
+    private static int count(SupportSQLiteDatabase db, String sql){
+        Cursor cursor = db.query(sql);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static SupportSQLiteOpenHelper openHelper(SupportSQLiteOpenHelper.Callback callback){
+        return new FrameworkSQLiteOpenHelperFactory().create(SupportSQLiteOpenHelper.Configuration
+                .builder(RuntimeEnvironment.application)
+                .name(TEST_DB)
+                .callback(callback)
+                .build());
+    }
+
+    private static String read(File file) throws IOException {
+        Scanner scanner = new Scanner(file, "UTF-8");
+        try {
+            return scanner.useDelimiter("\\A").next();
+        } finally {
+            scanner.close();
+        }
+    }
+
+    private <T> T onBackground(Callable<T> task) throws Exception {
+        return background.submit(task).get(300, TimeUnit.SECONDS);
+    }
+}
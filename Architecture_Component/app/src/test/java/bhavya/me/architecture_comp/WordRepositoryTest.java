@@ -0,0 +1,295 @@
+package bhavya.me.architecture_comp;
+
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*The write-behind buffer of WordRepository on an in-memory Database. insert() is called on the
+* test Thread, which is the main Thread under Robolectric, same as from the UI. flush() and the
+* queries can't run there, they run on a Thread of their own.*/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class WordRepositoryTest {
+
+    private static final int BURST = 1000;
+    //MAX_BUFFERED_INSERTS of WordRepository.
+    private static final int MAX_BUFFERED_INSERTS = 100;
+    private static final long SETTLE_MILLIS = 500;
+
+    private WordRoomDatabase database;
+    private WordRepository repository;
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void open() {
+        database = WordRoomDatabase.inMemory(RuntimeEnvironment.application, new WordRoomDatabase.Config());
+        repository = new WordRepository(database);
+    }
+
+    @After
+    public void close() throws Exception {
+        repository.close();
+        flush();
+        background.shutdownNow();
+        database.close();
+    }
+
+    /*Once the buffer is full every insert() wants a flush, but only one may be queued at a time,
+    * else a burst puts one Runnable per word on the writer.*/
+    @Test(timeout = 60000)
+    public void burstQueuesOneFlushPerFullBuffer() throws Exception {
+        long writesBefore = database.getExecutors().getCompletedWriteCount();
+        for(int i = 0; i < BURST; i++){
+            repository.insert(new Word("word" + i));
+        }
+        flush();
+        long writes = database.getExecutors().getCompletedWriteCount() - writesBefore;
+
+        //One per full buffer, plus the Bloom filter build, the flush() barrier and the rest of the buffer.
+        assertTrue("writer tasks " + writes, writes <= BURST / MAX_BUFFERED_INSERTS + 3);
+        assertEquals(0, database.getExecutors().getOverflowCount());
+        assertEquals(BURST, (int) background.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return database.wordDao().count();
+            }
+        }).get(10, TimeUnit.SECONDS));
+    }
+
+    /*Every transaction which changed word_table invalidates it once, and every observer(the
+    * LiveData of the list, the PagedList) queries it again. The same burst as one insertTask()
+    * per word, what the repository did before the buffer, invalidates it far more often.
+    *
+    * -> Invalidation runs on a Thread of Room after the commit, so the counts are only read once
+    * they stopped changing.*/
+    @Test(timeout = 60000)
+    public void burstInvalidatesFarLessThanInsertingEveryWord() throws Exception {
+        int before = settledInvalidationCount();
+        for(int i = 0; i < BURST; i++){
+            repository.insert(new Word("buffered" + i));
+        }
+        flush();
+        int buffered = settledInvalidationCount() - before;
+
+        background.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                WordDao dao = database.wordDao();
+                for(int i = 0; i < BURST; i++){
+                    dao.insertTask(new Word("direct" + i));
+                }
+                return null;
+            }
+        }).get(30, TimeUnit.SECONDS);
+        int direct = settledInvalidationCount() - before - buffered;
+
+        System.out.println(BURST + " inserts: " + buffered + " invalidations buffered, "
+                + direct + " with insertTask() per word");
+        //At most one per flush transaction.
+        assertTrue("buffered " + buffered, buffered >= 1 && buffered <= BURST / MAX_BUFFERED_INSERTS + 2);
+        assertTrue("buffered " + buffered + ", direct " + direct, buffered * 5 <= direct);
+    }
+
+    //Everything inserted before flush() is there afterwards, without waiting for the window.
+    @Test(timeout = 30000)
+    public void flushWritesTheBuffer() throws Exception {
+        repository.insert(new Word("hello"));
+        repository.insert(new Word("world"));
+        flush();
+
+        assertEquals(2, (int) background.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return database.wordDao().count();
+            }
+        }).get(10, TimeUnit.SECONDS));
+    }
+
+    /*Half of the words are already in the table. For them the Bloom filter says "maybe", exists()
+    * finds them and the INSERT is never tried. For the new half the filter says "definitely new"
+    * and they are inserted without exists(), only its false positives(about 1%) are checked.
+    * The filter is made by a writer task of its own, never inside the transaction of a flush.*/
+    @Test(timeout = 60000)
+    public void bloomFilterSkipsInsertForDuplicatesAndExistsForNewWords() throws Exception {
+        final int words = 500;
+        background.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                List<Word> existing = new ArrayList<>();
+                for(int i = 0; i < words; i++){
+                    existing.add(new Word("old" + i));
+                }
+                database.wordDao().insertAll(existing);
+                return null;
+            }
+        }).get(10, TimeUnit.SECONDS);
+        CountingWordDao dao = new CountingWordDao(database);
+        WordRepository counted = new WordRepository(database, dao);
+        try {
+            for(int i = 0; i < words; i++){
+                counted.insert(new Word("old" + i), WordDao.Conflict.IGNORE);
+                counted.insert(new Word("new" + i), WordDao.Conflict.IGNORE);
+            }
+        } finally {
+            //close() flushes what is still buffered, flush() waits for it.
+            counted.close();
+            flush(counted);
+        }
+
+        System.out.println(words + " duplicates and " + words + " new words: " + dao.inserts.get()
+                + " INSERTs, " + dao.exists.get() + " exists() queries");
+        //Only the new words were inserted.
+        assertEquals(words, dao.inserts.get());
+        //Every duplicate was checked, and at most 5% of the new words.
+        assertTrue("exists() " + dao.exists.get(), dao.exists.get() >= words
+                && dao.exists.get() - words <= words / 20);
+        assertEquals(0, dao.scansInTransaction.get());
+        assertEquals(2 * words, (int) background.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return database.wordDao().count();
+            }
+        }).get(10, TimeUnit.SECONDS));
+    }
+
+    //The invalidation count once it didn't change for SETTLE_MILLIS.
+    private int settledInvalidationCount() throws InterruptedException {
+        int count = repository.getInvalidationCount();
+        while (true){
+            Thread.sleep(SETTLE_MILLIS);
+            int now = repository.getInvalidationCount();
+            if(now == count){
+                return count;
+            }
+            count = now;
+        }
+    }
+
+    private void flush() throws Exception {
+        flush(repository);
+    }
+
+    private void flush(final WordRepository repository) throws Exception {
+        background.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException {
+                repository.flush();
+                return null;
+            }
+        }).get(30, TimeUnit.SECONDS);
+    }
+
+    /*The real WordDao of the Database, counting the calls WordRepository makes. count() and the
+    * keyset pages are only used to fill the Bloom filter, they must not run in a transaction.*/
+    private static final class CountingWordDao extends WordDao {
+
+        final AtomicInteger inserts = new AtomicInteger();
+        final AtomicInteger exists = new AtomicInteger();
+        final AtomicInteger scansInTransaction = new AtomicInteger();
+        private final WordRoomDatabase database;
+        private final WordDao dao;
+
+        CountingWordDao(WordRoomDatabase database) {
+            this.database = database;
+            this.dao = database.wordDao();
+        }
+
+        private void scan(){
+            if(database.inTransaction()){
+                scansInTransaction.incrementAndGet();
+            }
+        }
+
+        @Override
+        public long insertIgnore(Word word) {
+            inserts.incrementAndGet();
+            return dao.insertIgnore(word);
+        }
+
+        @Override
+        public boolean exists(String word) {
+            exists.incrementAndGet();
+            return dao.exists(word);
+        }
+
+        @Override
+        public int count() {
+            scan();
+            return dao.count();
+        }
+
+        @Override
+        public List<Word> getFirstWords(int limit) {
+            scan();
+            return dao.getFirstWords(limit);
+        }
+
+        @Override
+        public List<Word> getWordsAfter(String key, int limit) {
+            scan();
+            return dao.getWordsAfter(key, limit);
+        }
+
+        @Override
+        public void insertTask(Word word) {
+            dao.insertTask(word);
+        }
+
+        @Override
+        int updateColumns(String word, long createdAt, int frequency) {
+            return dao.updateColumns(word, createdAt, frequency);
+        }
+
+        @Override
+        public void insertAll(List<Word> words) {
+            dao.insertAll(words);
+        }
+
+        @Override
+        public List<Word> getWordsFrom(String key, int limit) {
+            return dao.getWordsFrom(key, limit);
+        }
+
+        @Override
+        public List<Word> getWordsBefore(String key, int limit) {
+            return dao.getWordsBefore(key, limit);
+        }
+
+        @Override
+        public void deleteAllWords() {
+            dao.deleteAllWords();
+        }
+
+        @Override
+        List<Word> rawQuery(SupportSQLiteQuery query) {
+            return dao.rawQuery(query);
+        }
+
+        @Override
+        public int backfillCreatedAt(long createdAt, int limit) {
+            return dao.backfillCreatedAt(createdAt, limit);
+        }
+
+        @Override
+        public Cursor wordsAfterCursor(String after, int limit) {
+            return dao.wordsAfterCursor(after, limit);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package bhavya.me.architecture_comp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import bhavya.me.architecture_comp.WordTrie;
+
+/*The autocomplete of the App(WordViewModel.complete()) with the real WordTrie, on the same words
+* as WordBenchmarkTest has in the table. Compare complete() with search() of WordBenchmarkTest:
+* that is what every keystroke would cost without the trie.*/
+@State(Scope.Thread)
+public class WordTrieBenchmark {
+
+    //A suggestion strip above the keyboard shows about this many.
+    private static final int MAX_RESULTS = 5;
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private WordTrie trie;
+    private WordTrie.Completions completions;
+    private String[] prefixes;
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        trie = new WordTrie();
+        for(int i = 0; i < rows; i++){
+            trie.add(word(i));
+        }
+        completions = new WordTrie.Completions(MAX_RESULTS);
+        //Made before, so complete() measures only the trie and not the String of the prefix.
+        prefixes = new String[1024];
+        for(int i = 0; i < prefixes.length; i++){
+            String word = word(i);
+            prefixes[i] = word.substring(0, Math.min(2, word.length()));
+        }
+    }
+
+    @Benchmark
+    public int complete() {
+        return trie.complete(prefixes[probe++ & (prefixes.length - 1)], completions);
+    }
+
+    @Benchmark
+    public WordTrie build() {
+        WordTrie built = new WordTrie();
+        for(int i = 0; i < rows; i++){
+            built.add(word(i));
+        }
+        return built;
+    }
+
+    //Same words as WordBenchmarkTest(app/src/test), see there.
+    private static String word(int index){
+        long value = (index * 0x9E3779B1) & 0xFFFFFFFFL;
+        char[] letters = new char[7];
+        int length = 0;
+        do {
+            letters[length++] = (char) ('a' + value % 26);
+            value /= 26;
+        } while (value != 0);
+        return new String(letters, 0, length);
+    }
+}
@@ -0,0 +1,165 @@
+package bhavya.me.threadlooper;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LooperWorkerPool {
+
+    /*SimpleWorker is one Thread with one Looper, so all Messages are handled one by one. If every
+    * feature made its own SimpleWorker we would end up with many Threads and Loopers which are
+    * sleeping most of the time. This Pool keeps a few HandlerThreads(a Thread which prepares its
+    * own Looper, same as our SimpleWorker does) and shares them.
+    *
+    * -> Routing by key: every Message/Runnable is given with a key, and the same key always goes
+    * to the same HandlerThread(decided by key.hashCode()). So all the Messages of one key are
+    * still handled in order, while different keys are handled in parallel on different Threads.
+    *
+    * -> Recycling: Messages are always taken with Message.obtain(), which gives a Message from
+    * the global pool of Messages instead of new Message(), and the Looper puts it back in that
+    * pool after handleMessage() returns. So sending a Message doesn't allocate.
+    *
+    * -> Nobody waits for the Loopers: the constructor only starts the HandlerThreads. Each one
+    * makes its Handler in onLooperPrepared() on its own Thread, and till then send()/post() keep
+    * the Messages and Runnables in pendingTasks, same as SimpleWorker does. So the Pool can be
+    * made and used right away on the Main Thread.
+    *
+    * -> quitSafely(): handles all the Messages which are already due(also the ones still kept
+    * because the Looper was not ready) and then stops the Loopers, Messages given after that are
+    * dropped(send()/post() return false).*/
+
+    private static final String TAG = "LooperWorkerPool";
+
+    private final Lane[] lanes;
+
+    public LooperWorkerPool(int size, Handler.Callback callback) {
+        if(size < 1){
+            throw new IllegalArgumentException("size must be at least 1, was " + size);
+        }
+        lanes = new Lane[size];
+        for(int i = 0; i < size; i++){
+            lanes[i] = new Lane(TAG + "-" + i, callback);
+            lanes[i].start();
+        }
+    }
+
+    //Same Lane for the same key, so Messages of one key are handled in order.
+    private Lane laneFor(Object key){
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return lanes[(hash & Integer.MAX_VALUE) % lanes.length];
+    }
+
+    public boolean send(Object key, int what, int arg1, int arg2, Object obj){
+        Message msg = Message.obtain();
+        msg.what = what;
+        msg.arg1 = arg1;
+        msg.arg2 = arg2;
+        msg.obj = obj;
+        return laneFor(key).sendMessage(msg);
+    }
+
+    public boolean send(Object key, int what){
+        Message msg = Message.obtain();
+        msg.what = what;
+        return laneFor(key).sendMessage(msg);
+    }
+
+    public boolean post(Object key, Runnable task){
+        return laneFor(key).post(task);
+    }
+
+    public int size(){
+        return lanes.length;
+    }
+
+    public void quitSafely(){
+        for(Lane lane : lanes){
+            lane.quitSafely();
+        }
+    }
+
+    /*One HandlerThread of the Pool. getLooper() of HandlerThread waits till the Looper is
+    * prepared, so it is never called from outside, the Handler is made on the Thread itself.*/
+    private static final class Lane extends HandlerThread {
+
+        private final Handler.Callback callback;
+        private final Object lock = new Object();
+        //Messages and Runnables given before handler was ready, guarded by lock.
+        private List<Object> pendingTasks = new ArrayList<>();
+        private volatile Handler handler;
+        //quitSafely() came before the Looper was ready, guarded by lock.
+        private boolean quitting;
+
+        Lane(String name, Handler.Callback callback) {
+            super(name, Process.THREAD_PRIORITY_BACKGROUND);
+            this.callback = callback;
+        }
+
+        /*On this Thread, before Looper.loop(). Inside the lock, so a send() at the same time goes
+        * either into pendingTasks before the hand over or to the Handler after it.*/
+        @Override
+        protected void onLooperPrepared() {
+            Handler ready = new Handler(getLooper(), callback);
+            synchronized (lock){
+                for(Object task : pendingTasks){
+                    if(task instanceof Message){
+                        ready.sendMessage((Message) task);
+                    }
+                    else {
+                        ready.post((Runnable) task);
+                    }
+                }
+                pendingTasks = null;
+                handler = ready;
+                if(quitting){
+                    getLooper().quitSafely();
+                }
+            }
+        }
+
+        boolean sendMessage(Message msg){
+            Handler ready = handler;
+            if(ready == null){
+                synchronized (lock){
+                    if(handler == null){
+                        return !quitting && pendingTasks.add(msg);
+                    }
+                    ready = handler;
+                }
+            }
+            return ready.sendMessage(msg);
+        }
+
+        boolean post(Runnable task){
+            Handler ready = handler;
+            if(ready == null){
+                synchronized (lock){
+                    if(handler == null){
+                        return !quitting && pendingTasks.add(task);
+                    }
+                    ready = handler;
+                }
+            }
+            return ready.post(task);
+        }
+
+        //HandlerThread.quitSafely() would wait in getLooper() if the Looper is not ready yet.
+        @Override
+        public boolean quitSafely() {
+            Handler ready;
+            synchronized (lock){
+                quitting = true;
+                ready = handler;
+            }
+            if(ready != null){
+                ready.getLooper().quitSafely();
+            }
+            return true;
+        }
+    }
+}
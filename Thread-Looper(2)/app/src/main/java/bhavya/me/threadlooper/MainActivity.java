@@ -8,6 +8,8 @@ import android.util.Log;
 
 public class MainActivity extends AppCompatActivity {
 
+    private LooperWorkerPool pool;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -23,44 +25,56 @@ public class MainActivity extends AppCompatActivity {
         * if we try to Access the mHandler just after start called it will throw the
         * NullPointerException.
         *
-        * -> So that's why I'm giving the 300 milliSeconds delay so that looper can be Prepare.
-        *
-        * -> And as you can see i passed the getMainLooper() to the handler, now this Handler
-        * is Associated with the Looper of the Main/UI thread or we can say that now this
-        * Handler can Enqueue the Message Or Runnables to the MessageQueue of the Main Thread
-        * after certain delay. And when Main Thread MessageQueue get this Runnable task then
-        * Main/UI thread will immediately Execute this Runnable and call the run() method of this
-        * Runnable.
+        * -> Earlier I was giving a 300 milliSeconds delay and also sleeping the Main Thread for
+        * 100 milliSeconds so that looper can be Prepare, but that only makes the app slower and
+        * on a slow device the Looper may still not be ready by then.
         *
-        * NOTE: If we didn't pass the getMainLooper() even then it will produce same result
-        * because we are calling and Instantiating the Handle in the MainActivity, so that it
-        * will automatically pass the Current Activity Thread(Main/UI) to the Handler, and Handler
-        * will associated with Main Thread.
+        * -> So now SimpleWorker has its own sendMessage() and post(), they can be called right
+        * after start(). If the Looper is not ready yet SimpleWorker keeps the Message/Runnable
+        * with itself and gives them to mHandler in the same order as soon as it is created. So
+        * the Main Thread never waits.
         *
+        * NOTE: obtainMessage() of SimpleWorker also recycles the Message from the global pool
+        * like mHandler.obtainMessage() does.
         * */
-        //This is used to Post/Enqueue the Runnable task to the Main Thread.
-        new Handler(getMainLooper()).postDelayed(new Runnable() {
-            public void run() {
-                Message m = worker.mHandler.obtainMessage();
-                m.arg1 = 10;
-                worker.mHandler.sendMessage(m);
-            }
-        }, 300);
+        Message m = worker.obtainMessage();
+        m.arg1 = 10;
+        worker.sendMessage(m);
 
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-
-        //This is used to Post/Enqueue the Runnable task to the SimpleWorker, because as we can see we are giving the Looper of SimpleWorker
-        // So this is Associated with SimpleWorker Thread.
-        new Handler(worker.mHandler.getLooper()).post(new Runnable() {
+        //This is used to Post/Enqueue the Runnable task to the SimpleWorker, it will run on the
+        //SimpleWorker Thread after the Message above.
+        worker.post(new Runnable() {
             @Override
             public void run() {
                 Log.d(SimpleWorker.TAG, "Runnale Example ");
             }
         });
+
+        /*-> When many features need a background Looper we don't make a SimpleWorker for each
+        * of them, they share the HandlerThreads of one LooperWorkerPool. The key decides the
+        * HandlerThread, so the Messages of "search" are handled in order, and in parallel to the
+        * ones of "sync".
+        *
+        * NOTE: like SimpleWorker, the Pool keeps the Messages till its Loopers are prepared, so
+        * we can send right after the constructor and the Main Thread never waits here either.*/
+        pool = new LooperWorkerPool(2, new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                Log.d(SimpleWorker.TAG, "In Pool, key = " + msg.obj + ", Msg = " + msg.arg1);
+                return true;
+            }
+        });
+        for(int i = 0; i < 3; i++){
+            pool.send("search", 0, i, 0, "search");
+            pool.send("sync", 0, i, 0, "sync");
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        //Messages already given are still handled, then the HandlerThreads stop.
+        pool.quitSafely();
     }
 }
 
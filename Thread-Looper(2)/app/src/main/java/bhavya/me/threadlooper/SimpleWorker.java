@@ -1,15 +1,71 @@
 package bhavya.me.threadlooper;
 
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.MessageQueue;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class SimpleWorker extends Thread {
 
     public static final String TAG = "SimpleWorker";
 
-    Handler mHandler;
+    //Empty Message which only makes the Looper go around once more, so idle tasks run again.
+    private static final int MSG_RESUME_IDLE_TASKS = -1;
+
+    /*-> Work which should only run when the MessageQueue of this Thread has nothing to do, like
+    * compaction, trimming caches or prefetching. The Looper calls it through
+    * MessageQueue.IdleHandler whenever the queue becomes empty.
+    *
+    * -> It gets an IdleBudget and has to do its work in small steps, and after every step check
+    * budget.shouldYield(). When that returns true(time is over or a new Message came) it must
+    * return as soon as possible, so that the Messages don't have to wait for it.
+    *
+    * -> Return true if there is still work left, then it will be called again next time the
+    * queue is idle, or false if it is done and should be removed.*/
+    public interface IdleTask {
+        boolean runWhileIdle(IdleBudget budget);
+    }
+
+    /*Callback which is called on the SimpleWorker Thread itself as soon as its Looper is
+    * prepared, before any buffered Message or Runnable is handled.*/
+    public interface OnLooperPreparedListener {
+        void onLooperPrepared(Handler handler);
+    }
+
+    /*-> volatile so that any Thread which reads mHandler sees it as soon as run() has created it.
+    *
+    * -> Earlier the Activity had to sleep() and postDelayed() and just hope that the Looper is
+    * prepared by then, otherwise mHandler was null and we got NullPointerException. Now we never
+    * have to touch mHandler before it is ready: use sendMessage()/post() of this class, they
+    * keep the Messages and Runnables in pendingTasks till the Looper is prepared and then hand
+    * them to the Handler in the same order. Or use awaitHandler() from a background Thread.*/
+    volatile Handler mHandler;
+
+    private final Object lock = new Object();
+    //Messages and Runnables given before mHandler was ready, guarded by lock.
+    private List<Object> pendingTasks = new ArrayList<>();
+    private final CountDownLatch handlerReady = new CountDownLatch(1);
+    private volatile OnLooperPreparedListener onLooperPreparedListener;
+
+    /*Counts everything given through sendMessage()/post(), used by IdleBudget below API 23.
+    * AtomicInteger because many Threads send at the same time, and a lost ++ on a volatile int
+    * could leave the count unchanged so an IdleTask wouldn't yield for that Message.*/
+    private final AtomicInteger sentCount = new AtomicInteger();
+    private final ConcurrentHashMap<IdleTask, IdleTaskHandler> idleTasks = new ConcurrentHashMap<>();
+
+    public SimpleWorker() {
+        super(TAG);
+    }
+
     /*When we call start() method from any activity then Thread is started and run()
     * method will call.*/
     @Override
@@ -34,7 +90,7 @@ public class SimpleWorker extends Thread {
         *              mHandler = new Handler(Looper.getMainLooper());
         * Now this Handler is Associated with the Looper of Main Thread and this handler now can
         * only handle the Main Thread Messages.*/
-        mHandler = new Handler(){
+        Handler handler = new Handler(){
 
             /*Now this Message execute the Message Object using this Current Thread, when Looper
             * dequeue the Message from MessageQueue it will return back the Mesasge Object to the
@@ -42,11 +98,182 @@ public class SimpleWorker extends Thread {
             @Override
             public void handleMessage(Message msg) {
                 super.handleMessage(msg);
+                if(msg.what == MSG_RESUME_IDLE_TASKS){
+                    return;
+                }
                 Log.d(TAG,"In Handler, Msg = "+msg.arg1);
             }
         };
+
+        OnLooperPreparedListener listener = onLooperPreparedListener;
+        if(listener != null){
+            listener.onLooperPrepared(handler);
+        }
+
+        /*Hand over everything which was given before the Handler was ready. It is done inside the
+        * lock, so a sendMessage() which comes at the same time either goes into pendingTasks before
+        * this or waits and then goes directly to the Handler after this, order is always kept.*/
+        synchronized (lock){
+            for(Object task : pendingTasks){
+                if(task instanceof Message){
+                    handler.sendMessage((Message) task);
+                }
+                else {
+                    handler.post((Runnable) task);
+                }
+            }
+            pendingTasks = null;
+            mHandler = handler;
+        }
+        handlerReady.countDown();
+
         /*loop() method will keep the Thread running until quit method is not called.*/
         Looper.loop();
     }
 
+    //Set it before start(), otherwise the Looper may already be prepared.
+    public void setOnLooperPreparedListener(OnLooperPreparedListener listener){
+        this.onLooperPreparedListener = listener;
+    }
+
+    /*Safe to call at any time, even before start(). Message.obtain() gives a recycled Message
+    * from the global pool, same as mHandler.obtainMessage() would, just without the target.*/
+    public Message obtainMessage(){
+        Handler handler = mHandler;
+        return handler != null ? handler.obtainMessage() : Message.obtain();
+    }
+
+    public boolean sendMessage(Message msg){
+        sentCount.incrementAndGet();
+        Handler handler = mHandler;
+        if(handler == null){
+            synchronized (lock){
+                if(mHandler == null){
+                    pendingTasks.add(msg);
+                    return true;
+                }
+                handler = mHandler;
+            }
+        }
+        return handler.sendMessage(msg);
+    }
+
+    public boolean post(Runnable task){
+        sentCount.incrementAndGet();
+        Handler handler = mHandler;
+        if(handler == null){
+            synchronized (lock){
+                if(mHandler == null){
+                    pendingTasks.add(task);
+                    return true;
+                }
+                handler = mHandler;
+            }
+        }
+        return handler.post(task);
+    }
+
+    /*Blocks till the Looper is prepared and returns the Handler. Never call it on the Main/UI
+    * Thread, there use sendMessage()/post() or the OnLooperPreparedListener instead.*/
+    public Handler awaitHandler() throws InterruptedException {
+        handlerReady.await();
+        return mHandler;
+    }
+
+    //null if the Looper is not prepared yet, never blocks.
+    public Handler getHandler(){
+        return mHandler;
+    }
+
+    /*Runs the task whenever this Thread has no Message to handle, for at most budgetMillis each
+    * time. Can be called from any Thread and before start() too.*/
+    public void addIdleTask(IdleTask task, long budgetMillis){
+        final IdleTaskHandler idleHandler = new IdleTaskHandler(task, TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+        if(idleTasks.putIfAbsent(task, idleHandler) != null){
+            return;
+        }
+        //addIdleHandler() has to be called on this Thread, Looper.myQueue() is its MessageQueue.
+        post(new Runnable() {
+            @Override
+            public void run() {
+                Looper.myQueue().addIdleHandler(idleHandler);
+            }
+        });
+    }
+
+    public void removeIdleTask(IdleTask task){
+        final IdleTaskHandler idleHandler = idleTasks.remove(task);
+        if(idleHandler == null){
+            return;
+        }
+        idleHandler.removed = true;
+        post(new Runnable() {
+            @Override
+            public void run() {
+                Looper.myQueue().removeIdleHandler(idleHandler);
+            }
+        });
+    }
+
+    /*Given to IdleTask.runWhileIdle(). shouldYield() is true when the time budget is used up or
+    * when a new Message is waiting, so the Message is never delayed by more than one step of the
+    * IdleTask.*/
+    public final class IdleBudget {
+
+        private long deadline;
+        private int sentCountAtStart;
+
+        private IdleBudget() {
+        }
+
+        public boolean shouldYield(){
+            if(System.nanoTime() >= deadline){
+                return true;
+            }
+            //isIdle() only exists from API 23, before that we can only see our own sendMessage()/post().
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M){
+                return !Looper.myQueue().isIdle();
+            }
+            return sentCount.get() != sentCountAtStart;
+        }
+
+        public long remainingNanos(){
+            return Math.max(0, deadline - System.nanoTime());
+        }
+    }
+
+    private final class IdleTaskHandler implements MessageQueue.IdleHandler {
+
+        private final IdleTask task;
+        private final long budgetNanos;
+        private final IdleBudget budget = new IdleBudget();
+        private volatile boolean removed;
+
+        IdleTaskHandler(IdleTask task, long budgetNanos) {
+            this.task = task;
+            this.budgetNanos = budgetNanos;
+        }
+
+        @Override
+        public boolean queueIdle() {
+            if(removed){
+                return false;
+            }
+            budget.deadline = System.nanoTime() + budgetNanos;
+            budget.sentCountAtStart = sentCount.get();
+            boolean moreWork = task.runWhileIdle(budget);
+            if(!moreWork){
+                idleTasks.remove(task, this);
+                return false;
+            }
+            /*The Looper calls idle handlers only once each time the queue becomes empty, and not
+            * again while it stays empty. If the task stopped only because its time was over, send
+            * an empty Message so the Looper goes around once more and calls it again. Any real
+            * Message which comes meanwhile is handled before it.*/
+            if(budget.remainingNanos() == 0){
+                mHandler.sendMessage(mHandler.obtainMessage(MSG_RESUME_IDLE_TASKS));
+            }
+            return true;
+        }
+    }
 }
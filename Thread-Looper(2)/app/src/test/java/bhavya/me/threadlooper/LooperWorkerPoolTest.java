@@ -0,0 +1,173 @@
+package bhavya.me.threadlooper;
+
+import android.os.Handler;
+import android.os.Message;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/*Runs on plain JVM through Robolectric: ./gradlew :app:testDebugUnitTest
+*
+* -> PAUSED LooperMode, so the HandlerThreads of the Pool have real Loopers which run on their
+* own Threads, same as on a device. In the old LEGACY mode Robolectric runs the Messages of
+* background Loopers on the test Thread and we would measure nothing.*/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class LooperWorkerPoolTest {
+
+    private static final int KEYS = 64;
+    private static final int MESSAGES = 200000;
+    //Some work in every Message, otherwise only the sending Thread is measured.
+    private static final long WORK_NANOS = TimeUnit.MICROSECONDS.toNanos(5);
+
+    private LooperWorkerPool pool;
+
+    @After
+    public void quit() {
+        if(pool != null){
+            pool.quitSafely();
+        }
+    }
+
+    /*Messages per second for Pools of 1, 2, 4 and 8 HandlerThreads, same keys and same work.
+    * Only printed, not asserted: how much it scales depends on the CPUs of the machine.*/
+    @Test(timeout = 120000)
+    public void throughputForOneTwoFourAndEightThreads() throws Exception {
+        int[] sizes = {1, 2, 4, 8};
+        for(int size : sizes){
+            //First run only warms up the JIT.
+            measure(size);
+            long perSecond = measure(size);
+            System.out.println("LooperWorkerPool(" + size + "): " + perSecond + " messages/s, "
+                    + MESSAGES + " messages over " + KEYS + " keys");
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void messagesOfOneKeyStayInOrder() throws Exception {
+        final int perKey = 5000;
+        final int[] last = new int[KEYS];
+        final int[] outOfOrder = new int[KEYS];
+        final CountDownLatch handled = new CountDownLatch(KEYS * perKey);
+        pool = new LooperWorkerPool(4, new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                //A key is always on the same Thread, so only that Thread touches its slot.
+                int key = (Integer) msg.obj;
+                if(msg.arg1 != last[key] + 1){
+                    outOfOrder[key]++;
+                }
+                last[key] = msg.arg1;
+                handled.countDown();
+                return true;
+            }
+        });
+        for(int i = 1; i <= perKey; i++){
+            for(int key = 0; key < KEYS; key++){
+                assertTrue(pool.send(key, 0, i, 0, key));
+            }
+        }
+
+        assertTrue(handled.await(20, TimeUnit.SECONDS));
+        for(int key = 0; key < KEYS; key++){
+            assertEquals(0, outOfOrder[key]);
+            assertEquals(perKey, last[key]);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void quitSafelyHandlesDueMessagesAndDropsLaterOnes() throws Exception {
+        final CountDownLatch handled = new CountDownLatch(100);
+        pool = new LooperWorkerPool(2, new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                handled.countDown();
+                return true;
+            }
+        });
+        for(int i = 0; i < 100; i++){
+            assertTrue(pool.send(i, 0));
+        }
+        pool.quitSafely();
+
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertFalse(pool.send("after quit", 0));
+        assertFalse(pool.post("after quit", new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+    }
+
+    /*The constructor doesn't wait for the Loopers, so sends and even quitSafely() can come before
+    * they are prepared. Everything given before quitSafely() must still be handled.*/
+    @Test(timeout = 10000)
+    public void messagesGivenBeforeLoopersArePreparedAreHandledAfterQuitSafely() throws Exception {
+        final CountDownLatch handled = new CountDownLatch(KEYS * 2);
+        pool = new LooperWorkerPool(4, new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                handled.countDown();
+                return true;
+            }
+        });
+        for(int key = 0; key < KEYS; key++){
+            assertTrue(pool.send(key, 0));
+            assertTrue(pool.post(key, new Runnable() {
+                @Override
+                public void run() {
+                    handled.countDown();
+                }
+            }));
+        }
+        pool.quitSafely();
+
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertFalse(pool.send("after quit", 0));
+    }
+
+    //Messages per second for one run of MESSAGES Messages through a new Pool of the given size.
+    private long measure(int size) throws InterruptedException {
+        final CountDownLatch handled = new CountDownLatch(MESSAGES);
+        pool = new LooperWorkerPool(size, new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                burn(WORK_NANOS);
+                handled.countDown();
+                return true;
+            }
+        });
+        Integer[] keys = new Integer[KEYS];
+        for(int key = 0; key < KEYS; key++){
+            keys[key] = key;
+        }
+
+        long start = System.nanoTime();
+        for(int i = 0; i < MESSAGES; i++){
+            pool.send(keys[i % KEYS], 0, i, 0, null);
+        }
+        assertTrue(handled.await(60, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+
+        pool.quitSafely();
+        pool = null;
+        return MESSAGES * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private static void burn(long nanos){
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end){
+            //Busy, like a real CPU bound Message.
+        }
+    }
+}
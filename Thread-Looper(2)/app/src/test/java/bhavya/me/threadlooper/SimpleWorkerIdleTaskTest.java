@@ -0,0 +1,123 @@
+package bhavya.me.threadlooper;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*Foreground latency of SimpleWorker with and without an IdleTask which always has more work.
+*
+* -> sdk 22 and 28: below API 23 IdleBudget only sees our own sendMessage()/post() through
+* sentCount, from 23 it asks MessageQueue.isIdle(), both ways have to yield.
+*
+* -> PAUSED LooperMode, so the SimpleWorker Thread runs its own real Looper and IdleHandlers.*/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = {22, 28})
+@LooperMode(LooperMode.Mode.PAUSED)
+public class SimpleWorkerIdleTaskTest {
+
+    private static final int PROBES = 200;
+    //One step of the IdleTask, the most a Message should ever wait for it.
+    private static final long STEP_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final SimpleWorker worker = new SimpleWorker();
+
+    @After
+    public void quit() throws InterruptedException {
+        worker.awaitHandler().getLooper().quit();
+        worker.join();
+    }
+
+    @Test(timeout = 30000)
+    public void foregroundLatencyDoesNotRegressWithIdleTask() throws Exception {
+        worker.start();
+        long[] withoutIdleTask = probe();
+
+        final AtomicInteger steps = new AtomicInteger();
+        worker.addIdleTask(new SimpleWorker.IdleTask() {
+            @Override
+            public boolean runWhileIdle(SimpleWorker.IdleBudget budget) {
+                //Like a compaction which never finishes, it only stops when told to.
+                do {
+                    burn(STEP_NANOS);
+                    steps.incrementAndGet();
+                } while (!budget.shouldYield());
+                return true;
+            }
+        }, 50);
+        long[] withIdleTask = probe();
+
+        System.out.println("Message p50/p99: without IdleTask " + micros(withoutIdleTask, 50) + "/"
+                + micros(withoutIdleTask, 99) + " us, with IdleTask " + micros(withIdleTask, 50)
+                + "/" + micros(withIdleTask, 99) + " us, idle steps meanwhile: " + steps.get());
+
+        //Without yielding a probe would wait up to the whole 50 ms budget.
+        assertTrue("p99 with IdleTask " + micros(withIdleTask, 99) + " us",
+                micros(withIdleTask, 99) < micros(withoutIdleTask, 99) + TimeUnit.MILLISECONDS.toMicros(5));
+        //And the IdleTask really ran between the probes.
+        assertTrue(steps.get() > 0);
+    }
+
+    @Test(timeout = 10000)
+    public void finishedIdleTaskIsNotCalledAgain() throws Exception {
+        worker.start();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(1);
+        worker.addIdleTask(new SimpleWorker.IdleTask() {
+            @Override
+            public boolean runWhileIdle(SimpleWorker.IdleBudget budget) {
+                calls.incrementAndGet();
+                finished.countDown();
+                return false;
+            }
+        }, 10);
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+
+        //Every probe makes the queue idle again afterwards.
+        probe();
+        assertEquals(1, calls.get());
+    }
+
+    //Latency from post() till the Runnable starts, for PROBES Runnables given one by one.
+    private long[] probe() throws InterruptedException {
+        long[] latencies = new long[PROBES];
+        for(int i = 0; i < PROBES; i++){
+            final long[] startedAt = new long[1];
+            final CountDownLatch ran = new CountDownLatch(1);
+            long postedAt = System.nanoTime();
+            worker.post(new Runnable() {
+                @Override
+                public void run() {
+                    startedAt[0] = System.nanoTime();
+                    ran.countDown();
+                }
+            });
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+            latencies[i] = startedAt[0] - postedAt;
+            Thread.sleep(1);
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static long micros(long[] sorted, int percentile){
+        int index = Math.min(sorted.length - 1, sorted.length * percentile / 100);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[index]);
+    }
+
+    private static void burn(long nanos){
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end){
+            //Busy, like real idle work.
+        }
+    }
+}
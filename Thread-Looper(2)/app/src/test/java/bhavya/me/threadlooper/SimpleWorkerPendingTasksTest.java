@@ -0,0 +1,99 @@
+package bhavya.me.threadlooper;
+
+import android.os.Handler;
+import android.os.Message;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/*sendMessage()/post() of SimpleWorker before its Looper is prepared: they are kept in
+* pendingTasks and handed to the Handler once it is made, none may be lost and the order must be
+* the order they were given in.
+*
+* -> Half of them are given before start(), the other half right after it, so they race with
+* run() handing over pendingTasks.
+*
+* -> PAUSED LooperMode, so the SimpleWorker Thread prepares and runs its own real Looper.*/
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class SimpleWorkerPendingTasksTest {
+
+    private static final int TASKS = 2000;
+    //The position of onLooperPrepared() in the order, before any task.
+    private static final int PREPARED = -1;
+
+    private final SimpleWorker worker = new SimpleWorker();
+
+    @After
+    public void quit() throws InterruptedException {
+        worker.awaitHandler().getLooper().quit();
+        worker.join();
+    }
+
+    @Test(timeout = 10000)
+    public void tasksGivenBeforeLooperIsPreparedArriveInOrder() throws Exception {
+        //Only touched on the SimpleWorker Thread, read here after handled.await().
+        final List<Integer> order = new ArrayList<>();
+        final CountDownLatch handled = new CountDownLatch(TASKS);
+        final AtomicInteger preparedCalls = new AtomicInteger();
+        final AtomicReference<Handler> preparedHandler = new AtomicReference<>();
+        worker.setOnLooperPreparedListener(new SimpleWorker.OnLooperPreparedListener() {
+            @Override
+            public void onLooperPrepared(Handler handler) {
+                preparedCalls.incrementAndGet();
+                preparedHandler.set(handler);
+                order.add(PREPARED);
+            }
+        });
+
+        for(int i = 0; i < TASKS / 2; i++){
+            give(i, order, handled);
+        }
+        assertNull(worker.getHandler());
+        worker.start();
+        for(int i = TASKS / 2; i < TASKS; i++){
+            give(i, order, handled);
+        }
+
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertEquals(TASKS + 1, order.size());
+        assertEquals(PREPARED, (int) order.get(0));
+        for(int i = 0; i < TASKS; i++){
+            assertEquals(i, (int) order.get(i + 1));
+        }
+        assertEquals(1, preparedCalls.get());
+        assertSame(worker.awaitHandler(), preparedHandler.get());
+    }
+
+    //Every second one as a Message, the others as a Runnable, both must keep their place.
+    private void give(final int index, final List<Integer> order, final CountDownLatch handled){
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                order.add(index);
+                handled.countDown();
+            }
+        };
+        if(index % 2 == 0){
+            //A Message with a callback, the Handler runs it instead of handleMessage().
+            assertTrue(worker.sendMessage(Message.obtain(null, task)));
+        }
+        else {
+            assertTrue(worker.post(task));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package bhavya.me.threadnlooper;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HashedTimerWheel {
+
+    /*This is how SimpleWorker runs tasks after some delay without calling Thread.sleep().
+    *
+    * -> Think of a clock with N slots(buckets) and a hand which moves one slot every tick(for
+    * example 10 milliSeconds). When we want to run a task after some delay we calculate in which
+    * slot the hand will be at that time and put the task in that slot. When the hand reaches a
+    * slot, every task in that slot is due and will be run.
+    *
+    * -> If the delay is longer than one full turn of the clock(N * tick), the task also remembers
+    * how many full turns(rounds) it has to wait, and it is only run when that becomes 0.
+    *
+    * -> Every slot is a doubly linked list and every Timeout is itself a node of that list, so
+    * adding and cancelling are O(1) and no matter if there are 10 or 10,000 pending Timeouts.
+    *
+    * NOTE: Only the owner Thread(SimpleWorker) touches the slots. Other Threads which call
+    * schedule() or cancel() only put the Timeout into a Queue, and the owner Thread moves them
+    * into the slots the next time it calls expireTimeouts(). So we don't need any lock.*/
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Timeout[] buckets;
+    private final long startTime;
+
+    private final ConcurrentLinkedQueue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+    //These two are only used by the owner Thread.
+    private long nextTick;
+    private int size;
+
+    public HashedTimerWheel(long tickMillis, int wheelSize) {
+        if(tickMillis <= 0){
+            throw new IllegalArgumentException("tickMillis must be positive, was " + tickMillis);
+        }
+        if(wheelSize <= 0 || wheelSize > (1 << 30)){
+            throw new IllegalArgumentException("wheelSize out of range: " + wheelSize);
+        }
+        //Round the size up to a power of two, so (tick & mask) can be used instead of (tick % size).
+        int normalized = Integer.highestOneBit(wheelSize);
+        if(normalized < wheelSize){
+            normalized <<= 1;
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = normalized - 1;
+        this.buckets = new Timeout[normalized];
+        this.startTime = System.nanoTime();
+    }
+
+    //Can be called from any Thread, periodMillis = 0 means the task only runs once.
+    public Timeout schedule(Runnable task, long delayMillis, long periodMillis){
+        return schedule(task, delayMillis, periodMillis, System.nanoTime());
+    }
+
+    //now is System.nanoTime(), given from outside only so tests can move the time.
+    Timeout schedule(Runnable task, long delayMillis, long periodMillis, long now){
+        if(delayMillis < 0){
+            delayMillis = 0;
+        }
+        long deadline = now - startTime + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        Timeout timeout = new Timeout(task, deadline, TimeUnit.MILLISECONDS.toNanos(periodMillis));
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /*Only called by the owner Thread. It moves the hand of the clock till the current time and
+    * runs every task which is due, the tasks run on the calling Thread.*/
+    public void expireTimeouts(long now){
+        long elapsed = now - startTime;
+        transferCancelled();
+        /*If the wheel is empty the hand stopped moving(the loop below only runs while size > 0),
+        * so it may still point to the time of the last Timeout, hours ago. Move it forward first,
+        * otherwise the new Timeouts are placed against that old tick and the loop below walks
+        * every tick of the idle time one by one. But not further than the earliest new deadline,
+        * a Timeout which is already overdue(the Thread was busy with a long task) must still
+        * expire in this call.*/
+        if(size == 0 && nextTick * tickNanos < elapsed){
+            long tick = elapsed / tickNanos;
+            for(Timeout timeout : pendingTimeouts){
+                tick = Math.min(tick, timeout.deadline / tickNanos);
+            }
+            nextTick = Math.max(nextTick, tick);
+        }
+        transferPending();
+
+        /*A tick is only processed after it is fully passed, so a task may run at most one tick
+        * late but never early.*/
+        while (size > 0 && (nextTick + 1) * tickNanos <= elapsed){
+            expireBucket((int) (nextTick & mask), elapsed);
+            nextTick++;
+        }
+    }
+
+    /*Only called by the owner Thread. Tells how long the Thread can sleep before the next task
+    * is due, or -1 if there is nothing scheduled and the Thread can sleep until woken up.*/
+    public long nanosUntilNextTimeout(long now){
+        if(!pendingTimeouts.isEmpty()){
+            return 0;
+        }
+        if(size == 0){
+            return -1;
+        }
+        long elapsed = now - startTime;
+        for(int i = 0; i < buckets.length; i++){
+            if(buckets[(int) ((nextTick + i) & mask)] != null){
+                return Math.max(0, (nextTick + i + 1) * tickNanos - elapsed);
+            }
+        }
+        return -1;
+    }
+
+    /*Only called by the owner Thread when it stops for good: every Timeout which is still waiting
+    * is cancelled and none of their tasks will run.*/
+    public void cancelAll(){
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null){
+            timeout.state.compareAndSet(PENDING, CANCELLED);
+        }
+        for(int i = 0; i < buckets.length; i++){
+            for(timeout = buckets[i]; timeout != null; timeout = timeout.next){
+                timeout.state.compareAndSet(PENDING, CANCELLED);
+                timeout.bucket = -1;
+            }
+            buckets[i] = null;
+        }
+        cancelledTimeouts.clear();
+        size = 0;
+    }
+
+    //True if there are any Timeouts which are still waiting, only accurate on the owner Thread.
+    public boolean hasTimeouts(){
+        return size > 0 || !pendingTimeouts.isEmpty();
+    }
+
+    private void transferPending(){
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null){
+            if(timeout.state.get() == PENDING){
+                place(timeout, nextTick);
+            }
+        }
+    }
+
+    private void transferCancelled(){
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null){
+            //If it is not in a bucket then it is still in pendingTimeouts and will be skipped there.
+            if(timeout.bucket >= 0){
+                unlink(timeout);
+            }
+        }
+    }
+
+    //firstTick is the first tick which will still be processed, a Timeout is never put before it.
+    private void place(Timeout timeout, long firstTick){
+        long tick = Math.max(timeout.deadline / tickNanos, firstTick);
+        timeout.remainingRounds = (tick - firstTick) / buckets.length;
+        int index = (int) (tick & mask);
+        timeout.bucket = index;
+        timeout.prev = null;
+        timeout.next = buckets[index];
+        if(buckets[index] != null){
+            buckets[index].prev = timeout;
+        }
+        buckets[index] = timeout;
+        size++;
+    }
+
+    private void unlink(Timeout timeout){
+        if(timeout.prev != null){
+            timeout.prev.next = timeout.next;
+        }
+        else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if(timeout.next != null){
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+
+    private void expireBucket(int index, long elapsed){
+        Timeout timeout = buckets[index];
+        while (timeout != null){
+            Timeout next = timeout.next;
+            if(timeout.remainingRounds <= 0){
+                unlink(timeout);
+                if(timeout.period > 0){
+                    timeout.task.run();
+                    /*Fixed rate, the next deadline is based on the old deadline and not on now. If
+                    * the task took so long that the next run is already missed, then we don't run
+                    * it many times to catch up, we just run it in the next tick.*/
+                    if(timeout.state.get() == PENDING){
+                        timeout.deadline = Math.max(timeout.deadline + timeout.period, elapsed);
+                        place(timeout, nextTick + 1);
+                    }
+                }
+                else if(timeout.state.compareAndSet(PENDING, EXPIRED)){
+                    timeout.task.run();
+                }
+            }
+            else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    public final class Timeout {
+
+        private final Runnable task;
+        private final long period;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        //Owned by the wheel Thread.
+        private long deadline;
+        private long remainingRounds;
+        private int bucket = -1;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline, long period) {
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        //Can be called from any Thread, returns false if the task already ran or was cancelled.
+        public boolean cancel(){
+            if(!state.compareAndSet(PENDING, CANCELLED)){
+                return false;
+            }
+            cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled(){
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired(){
+            return state.get() == EXPIRED;
+        }
+    }
+}
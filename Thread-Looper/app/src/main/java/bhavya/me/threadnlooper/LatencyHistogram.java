@@ -0,0 +1,90 @@
+package bhavya.me.threadnlooper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+
+    /*A small HDR(High Dynamic Range) style histogram for nanoSecond durations.
+    *
+    * -> Keeping every value would need memory for every task, so we only count how many values
+    * fall in each bucket. Buckets are small for small values and big for big values: every power
+    * of two(like 1024..2047 ns) is split into 16 equal sub-buckets. So every value is stored
+    * with an error of at most 1/16(about 6%), from 1 nanoSecond up to hours, in 960 buckets.
+    *
+    * -> record() doesn't allocate anything, it is just some bit operations and one increment.
+    *
+    * NOTE: Only one Thread(the SimpleWorker) should call record(), any Thread can read it.*/
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private volatile long totalCount;
+    private volatile long maxValue;
+
+    public void record(long value){
+        if(value < 0){
+            value = 0;
+        }
+        int index = indexOf(value);
+        //Single writer, so a plain increment with lazySet() is enough and cheaper than getAndIncrement().
+        counts.lazySet(index, counts.get(index) + 1);
+        totalCount = totalCount + 1;
+        if(value > maxValue){
+            maxValue = value;
+        }
+    }
+
+    public long getTotalCount(){
+        return totalCount;
+    }
+
+    public long getMaxValue(){
+        return maxValue;
+    }
+
+    /*Value at the given percentile(0 to 100), it is the lowest value of the bucket in which the
+    * percentile falls, so it can be lower than the real value by up to 6%.*/
+    public long getValueAtPercentile(double percentile){
+        long total = totalCount;
+        if(total == 0){
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts.get(i);
+            if(seen >= target){
+                return Math.min(valueOf(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    public void reset(){
+        for(int i = 0; i < BUCKETS; i++){
+            counts.set(i, 0);
+        }
+        totalCount = 0;
+        maxValue = 0;
+    }
+
+    static int indexOf(long value){
+        if(value < SUB_BUCKETS){
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long valueOf(int index){
+        if(index < SUB_BUCKETS){
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
@@ -0,0 +1,137 @@
+package bhavya.me.threadnlooper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+public class LinkedTaskQueue implements TaskQueue {
+
+    /*The default Queue of SimpleWorker. It never gets full, and keeps growing if the tasks are
+    * added faster than the SimpleWorker can run them.
+    *
+    * -> Before this we used ConcurrentLinkedQueue, which allocates one node per task. Here a task
+    * which is itself a Node(WorkerFuture extends it) is linked in directly, so submit() doesn't
+    * allocate anything for the Queue. A plain Runnable from execute() still gets one Node of its
+    * own, and so does a WorkerFuture which is offered a second time(a Node can only be in one
+    * place in the list). The node also keeps the enqueueTime of the task so the metrics don't
+    * need any extra object, and it is simpler because only one Thread ever polls:
+    *
+    *       Producers: tail.getAndSet(node) gives every producer its own previous node, and then
+    *       it links previous.next = node. No loop, no retry.
+    *
+    *       Consumer: just follows head.next, so it doesn't need any compareAndSet().
+    *
+    * -> remove() doesn't unlink the node, it only takes the task out of it, and poll() skips
+    * such empty nodes.
+    *
+    * -> poll() cuts the next link of every node it leaves behind. A WorkerFuture which somebody
+    * still holds would otherwise keep every node which came after it alive. The last polled node
+    * stays the head till the next poll(), so one finished WorkerFuture may live that long.*/
+
+    private static final AtomicReferenceFieldUpdater<Node, Runnable> TASK =
+            AtomicReferenceFieldUpdater.newUpdater(Node.class, Runnable.class, "task");
+    private static final AtomicIntegerFieldUpdater<Node> LINKED =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "linked");
+
+    private final AtomicReference<Node> tail;
+    private final AtomicInteger size = new AtomicInteger();
+    //Written only by the consumer, volatile because remove() walks from here on other Threads.
+    private volatile Node head;
+    private long lastEnqueueTime;
+
+    public LinkedTaskQueue() {
+        Node stub = new Node(null, 0);
+        head = stub;
+        tail = new AtomicReference<>(stub);
+    }
+
+    @Override
+    public boolean offer(Runnable task, long enqueueTime) {
+        if(task == null){
+            throw new NullPointerException("task == null");
+        }
+        Node node;
+        if(task instanceof Node && LINKED.compareAndSet((Node) task, 0, 1)){
+            node = (Node) task;
+            node.enqueueTime = enqueueTime;
+            node.task = task;
+        }
+        else {
+            node = new Node(task, enqueueTime);
+        }
+        size.incrementAndGet();
+        Node previous = tail.getAndSet(node);
+        previous.next = node;
+        return true;
+    }
+
+    @Override
+    public Runnable poll() {
+        Node node = head;
+        for(;;){
+            Node next = node.next;
+            if(next == null){
+                return null;
+            }
+            head = next;
+            //No producer touches it anymore, its next is already linked.
+            node.next = null;
+            Runnable task = TASK.getAndSet(next, null);
+            if(task != null){
+                size.decrementAndGet();
+                lastEnqueueTime = next.enqueueTime;
+                return task;
+            }
+            //It was removed, move on to the next node.
+            node = next;
+        }
+    }
+
+    @Override
+    public long lastEnqueueTime() {
+        return lastEnqueueTime;
+    }
+
+    @Override
+    public boolean remove(Runnable task) {
+        for(Node node = head.next; node != null; node = node.next){
+            if(node.task == task && TASK.compareAndSet(node, task, null)){
+                size.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*A producer which already did getAndSet() but not yet linked the node makes tail != head, so
+    * the Queue is not empty and the SimpleWorker will not go to sleep while that task comes.*/
+    @Override
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, size.get());
+    }
+
+    static class Node {
+        volatile Runnable task;
+        //Written before the node is published by tail.getAndSet(), so it doesn't need volatile.
+        long enqueueTime;
+        volatile Node next;
+        //1 once the node is in a Queue, see offer().
+        volatile int linked;
+
+        //For a task which is its own node.
+        Node() {
+        }
+
+        Node(Runnable task, long enqueueTime) {
+            this.task = task;
+            this.enqueueTime = enqueueTime;
+            this.linked = 1;
+        }
+    }
+}
@@ -7,6 +7,8 @@ import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.widget.TextView;
 
+import java.util.concurrent.Callable;
+
 public class MainActivity extends AppCompatActivity {
 
     private TextView textView;
@@ -64,20 +66,19 @@ public class MainActivity extends AppCompatActivity {
         //Basically this is the Thread class which has Looper(While loop) and Queue.
         worker = new SimpleWorker();
 
-        /*now we are giving/enqueue the Runnable Tasks to the SimpleWorker Queue, so that Looper
-        * of the SimpleWorker can loop through the Queue and give the task to the Thread for
-        * execution one by one.
+        /*now we are giving/enqueue the Runnable Tasks to the SimpleWorker, so that Looper
+        * of the SimpleWorker can give the task to the Thread for execution one by one.
+        *
+        * Here: I'm providing 3 Tasks to perform.
         *
-        * Here: I'm providing 3 Tasks to perform.*/
-        worker.execute(new Runnable() {
+        * -> Earlier every task called Thread.sleep() for its delay, but that blocks the only
+        * Thread of the SimpleWorker and every other task has to wait behind the sleeping one.
+        * Now we use executeDelayed() so the task waits in the timer wheel of SimpleWorker and
+        * the Thread is free for other tasks meanwhile. The delays are same as before: 2, 2+2
+        * and 2+2+4 seconds.*/
+        worker.executeDelayed(new Runnable() {
             @Override
             public void run() {
-                try {
-                    Thread.sleep(2000);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-
                 /*Now as we can see we want to Access the Main Thread from this Background Task
                 * Now we can do this by Calling the Main/UI thread Handler, so that Main Thread
                 * Handler get this Message Object and then Pass to the MessageQueue of the Main
@@ -86,33 +87,47 @@ public class MainActivity extends AppCompatActivity {
                 message.obj = "This is Runnable 1";
                 handler.sendMessage(message);
             }
-        })
-                .execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            Thread.sleep(2000);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                        Message message = Message.obtain();
-                        message.obj = "This is Runnable 2";
-                        handler.sendMessage(message);
-                    }
-                })
-                .execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            Thread.sleep(4000);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                        Message message = Message.obtain();
-                        message.obj = "This is Runnable 3";
-                        handler.sendMessage(message);
-                    }
-                });
+        }, 2000);
+        worker.executeDelayed(new Runnable() {
+            @Override
+            public void run() {
+                Message message = Message.obtain();
+                message.obj = "This is Runnable 2";
+                handler.sendMessage(message);
+            }
+        }, 4000);
+        worker.executeDelayed(new Runnable() {
+            @Override
+            public void run() {
+                Message message = Message.obtain();
+                message.obj = "This is Runnable 3";
+                handler.sendMessage(message);
+            }
+        }, 8000);
+
+        /*-> If we want a result back from the SimpleWorker we don't have to make a Message and
+        * send it to the handler ourselves. submit() gives us a WorkerFuture and addCallback()
+        * delivers the result on the Looper we pass, here the Main Looper so we can touch the
+        * textView directly in onResult().
+        *
+        * -> It is given with Priority.IMMEDIATE because the UI is waiting for it, so even if many
+        * NORMAL or BULK tasks are already in the SimpleWorker this one will run before them.*/
+        worker.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return "SimpleWorker is ready";
+            }
+        }, SimpleWorker.Priority.IMMEDIATE).addCallback(new WorkerFuture.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+                textView.setText(result);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                textView.setText(error.toString());
+            }
+        }, getMainLooper());
 
     }
 
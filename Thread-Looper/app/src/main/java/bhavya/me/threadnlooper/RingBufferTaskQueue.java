@@ -0,0 +1,121 @@
+package bhavya.me.threadnlooper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class RingBufferTaskQueue implements TaskQueue {
+
+    /*A fixed size Queue made on an Array which is allocated only once, so adding a task doesn't
+    * allocate anything(no node like ConcurrentLinkedQueue) and the Queue can never grow more than
+    * its capacity.
+    *
+    * -> Ring: tail and head only keep increasing, and (position & mask) gives the slot in the
+    * Array, so after the last slot we come back to the first slot again. That's why capacity
+    * has to be a power of two.
+    *
+    * -> Every slot also has a sequence number which tells whose turn it is on that slot:
+    *       sequence == position       -> slot is free, a producer can write at this position.
+    *       sequence == position + 1   -> slot has a task, the consumer can read it.
+    *   After reading, the consumer sets sequence = position + capacity, which means the slot is
+    *   free again for the producer which comes one full round later.
+    *
+    * -> Many producers: they fight for the tail with compareAndSet(), the one who wins owns that
+    * slot and nobody else writes in it. One consumer: only the SimpleWorker Thread reads, so head
+    * doesn't need compareAndSet().*/
+
+    private final int mask;
+    private final AtomicReferenceArray<Runnable> buffer;
+    private final AtomicLongArray sequences;
+    //Written before the sequence is published and read after it, so a plain Array is enough.
+    private final long[] enqueueTimes;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private long lastEnqueueTime;
+
+    public RingBufferTaskQueue(int capacity) {
+        if(capacity < 2 || capacity > (1 << 30) || Integer.bitCount(capacity) != 1){
+            throw new IllegalArgumentException("capacity must be a power of two, was " + capacity);
+        }
+        mask = capacity - 1;
+        buffer = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        enqueueTimes = new long[capacity];
+        for(int i = 0; i < capacity; i++){
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task, long enqueueTime) {
+        if(task == null){
+            throw new NullPointerException("task == null");
+        }
+        long position = tail.get();
+        for(;;){
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if(difference == 0){
+                if(tail.compareAndSet(position, position + 1)){
+                    buffer.lazySet(index, task);
+                    enqueueTimes[index] = enqueueTime;
+                    //Publish the task, the consumer only reads the slot after it sees this.
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if(difference < 0){
+                //The consumer didn't free this slot yet, so the Queue is full.
+                return false;
+            }
+            else {
+                //Some other producer already took this position, try again with the new tail.
+                position = tail.get();
+            }
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        long position = head.get();
+        int index = (int) (position & mask);
+        if(sequences.get(index) != position + 1){
+            return null;
+        }
+        Runnable task = buffer.get(index);
+        lastEnqueueTime = enqueueTimes[index];
+        buffer.lazySet(index, null);
+        sequences.lazySet(index, position + mask + 1);
+        head.lazySet(position + 1);
+        return task;
+    }
+
+    @Override
+    public long lastEnqueueTime() {
+        return lastEnqueueTime;
+    }
+
+    /*A slot in the middle of the ring can't be freed without moving all the tasks behind it, so
+    * a cancelled WorkerFuture just stays here and does nothing when the SimpleWorker runs it.*/
+    @Override
+    public boolean remove(Runnable task) {
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        //May also count the producers which have taken a slot but not yet written the task.
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    public int capacity(){
+        return mask + 1;
+    }
+}
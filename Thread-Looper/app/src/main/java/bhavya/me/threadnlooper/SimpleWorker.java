@@ -1,7 +1,16 @@
 package bhavya.me.threadnlooper;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 public class SimpleWorker extends Thread {
 
@@ -18,38 +27,583 @@ public class SimpleWorker extends Thread {
 
     private static final String TAG = "SimpleWorker";
 
+    //10 milliSeconds tick and 512 slots, so one turn of the wheel is about 5 seconds.
+    private static final long TIMER_TICK_MILLIS = 10;
+    private static final int TIMER_WHEEL_SIZE = 512;
+
+    //How long a producer waits before trying again when the Queue is full and policy is BLOCK.
+    private static final long BLOCK_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /*What execute() does when a bounded Queue is full:
+    *       BLOCK  -> wait till the SimpleWorker takes some task out of the Queue.
+    *       DROP   -> forget the task(it is counted in getDroppedCount()).
+    *       REJECT -> tryExecute() returns false and execute() throws RejectedExecutionException.
+    * The default unbounded Queue is never full so this doesn't matter for it.*/
+    public enum OverflowPolicy {
+        BLOCK,
+        DROP,
+        REJECT
+    }
+
+    /*-> Every Priority has its own Queue(lane), and the SimpleWorker always takes the task from
+    * the highest lane which is not empty. So a short IMMEDIATE task(like something the UI is
+    * waiting for) doesn't have to wait behind all the BULK tasks which were given before it.
+    *
+    * -> But if IMMEDIATE and NORMAL tasks keep coming all the time then BULK tasks would never
+    * run(starvation). So after every STARVATION_INTERVAL tasks the lanes are checked once from
+    * the lowest to the highest, which means BULK gets at least one task in every 16 even when
+    * the worker is flooded with higher priority tasks.*/
+    public enum Priority {
+        IMMEDIATE,
+        NORMAL,
+        BULK
+    }
+
+    private static final int STARVATION_INTERVAL = 16;
+
     private AtomicBoolean isAlive = new AtomicBoolean(true);
-    private ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    //Set by the loop Thread after quit(), once the Queues are drained, see abandonPending().
+    private volatile boolean terminated;
+    //One Queue for every Priority, index is Priority.ordinal().
+    private final TaskQueue[] lanes;
+    //Only used by the SimpleWorker Thread, polledLane is the lane of the last task from pollTask().
+    private int dispatchCount;
+    private int polledLane;
+
+    //null if the SimpleWorker was not built with Builder.metrics(true).
+    private final WorkerMetrics metrics;
+
+    /*-> batchSize is how many tasks the Thread runs one after another before it checks the timer
+    * wheel and isAlive again, by default it is 1 which means it checks after every task.
+    *
+    * -> coalesced holds the latest task for every coalescing key which is still waiting, see
+    * executeCoalesced().*/
+    private final int batchSize;
+    private final ConcurrentHashMap<Object, Runnable> coalesced = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private volatile long executedCount;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final HashedTimerWheel timers = new HashedTimerWheel(TIMER_TICK_MILLIS, TIMER_WHEEL_SIZE);
+
+    /*-> If blocking is true then the Thread will park(sleep without using the CPU) when there is
+    * no task in the Queue, and execute() will wake it up(unpark) again. This is what the real
+    * Looper does with the MessageQueue, it waits in nativePollOnce() instead of spinning.
+    *
+    * -> If blocking is false then the old behaviour is used, the while loop keep polling the
+    * Queue even when it is empty and that keeps one core of the CPU busy all the time.*/
+    private final boolean blocking;
+
+    /*True only while the Thread is parked (or just about to park), so execute() only pays for
+    * unpark() when the Thread is actually waiting for a task.*/
+    private volatile boolean waiting;
+
+    /*-> The Thread which actually runs the while loop. Normally it is this SimpleWorker itself,
+    * but on a JVM which has virtual Threads(Java 21+) we can ask for the loop to run on a virtual
+    * Thread instead, see Builder.preferVirtualThread().
+    *
+    * -> Why? A platform Thread is an OS Thread with its own big stack, so a backend with many
+    * SimpleWorkers pins that many OS Threads, even while they are parked or while a task is
+    * blocked on I/O. A virtual Thread gives its carrier OS Thread back whenever it parks or
+    * blocks, so thousands of mostly waiting workers are cheap.
+    *
+    * -> It is the same loop, the same Queues and the same park/unpark, so the order of tasks and
+    * quit() work exactly the same in both modes. Android doesn't have virtual Threads, so there
+    * we always fall back to this Thread.
+    *
+    * NOTE: In virtual mode this SimpleWorker object itself is never started, so use
+    * getLoopThread().join() instead of join().*/
+    private final Thread loopThread;
 
     public SimpleWorker() {
+        this(true);
+    }
+
+    public SimpleWorker(boolean blocking) {
+        this(new Builder().blocking(blocking));
+    }
+
+    private SimpleWorker(Builder builder) {
         super(TAG);
+        this.blocking = builder.blocking;
+        this.lanes = new TaskQueue[Priority.values().length];
+        for(int i = 0; i < lanes.length; i++){
+            lanes[i] = builder.capacity > 0
+                    ? new RingBufferTaskQueue(builder.capacity)
+                    : new LinkedTaskQueue();
+        }
+        this.overflowPolicy = builder.overflowPolicy;
+        this.batchSize = builder.batchSize;
+        this.metrics = builder.metrics ? new WorkerMetrics() : null;
+        Thread virtualThread = builder.preferVirtualThread ? newVirtualThread(this) : null;
+        this.loopThread = virtualThread != null ? virtualThread : this;
         /*This will start the current Thread, so we don't have to make instance of
         * ths class like: SimpleWorker worker = new SimpleWorker();
         *                  worker.start();
         * We don't have to do this and now after start() being called, so now run() method
         * of this Thread class will be called.*/
-        start();
+        loopThread.start();
+
+        if(metrics != null && builder.metricsLogIntervalMillis > 0){
+            //Runs on this Thread like any other task, so the log line also tells if the worker is stuck.
+            executeAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    Log.d(TAG, "Metrics: " + getMetricsSnapshot());
+                }
+            }, builder.metricsLogIntervalMillis, builder.metricsLogIntervalMillis);
+        }
     }
 
     @Override
     public void run() {
         while (isAlive.get()){
-            Runnable task = queue.poll();
-            if(task!=null){
-                task.run();
+            if(timers.hasTimeouts()){
+                timers.expireTimeouts(System.nanoTime());
+            }
+            int executed = 0;
+            Runnable task;
+            while (executed < batchSize && (task = pollTask()) != null){
+                if(metrics != null){
+                    runMeasured(task);
+                }
+                else {
+                    task.run();
+                }
+                executed++;
+            }
+            if(executed > 0){
+                //Only this Thread writes it, so a plain read and a volatile write is enough.
+                executedCount += executed;
+            }
+            else if(blocking){
+                awaitTask();
+            }
+        }
+        abandonPending();
+    }
+
+    /*-> After quit() nothing which is still waiting will run anymore, but somebody may be blocked
+    * in WorkerFuture.get() without a timeout, or wait for a Callback. So every WorkerFuture left
+    * in the Queues is cancelled(get() throws CancellationException, Callbacks get onError()),
+    * plain Runnables are just dropped, and every Timeout in the timer wheel is cancelled.
+    *
+    * -> tryExecute() refuses new tasks once isAlive is false. A task which was offered in the
+    * same instant as quit() and only landed in the Queue after this drain is taken out again by
+    * tryExecute() itself(see terminated), a RingBufferTaskQueue can't remove it so it just stays
+    * there and never runs.*/
+    private void abandonPending(){
+        timers.cancelAll();
+        coalesced.clear();
+        Runnable task;
+        while ((task = pollTask()) != null){
+            abandon(task);
+        }
+        terminated = true;
+        //A last look, for tasks offered while we were draining.
+        while ((task = pollTask()) != null){
+            abandon(task);
+        }
+    }
+
+    private static void abandon(Runnable task){
+        if(task instanceof WorkerFuture){
+            ((WorkerFuture<?>) task).abandon();
+        }
+    }
+
+    private Runnable pollTask(){
+        Runnable task;
+        if(++dispatchCount >= STARVATION_INTERVAL){
+            dispatchCount = 0;
+            for(int i = lanes.length - 1; i >= 0; i--){
+                if((task = lanes[i].poll()) != null){
+                    polledLane = i;
+                    return task;
+                }
+            }
+            return null;
+        }
+        for(int i = 0; i < lanes.length; i++){
+            if((task = lanes[i].poll()) != null){
+                polledLane = i;
+                return task;
+            }
+        }
+        return null;
+    }
+
+    //Two System.nanoTime() calls and a few increments, nothing is allocated.
+    private void runMeasured(Runnable task){
+        long start = System.nanoTime();
+        long enqueueTime = lanes[polledLane].lastEnqueueTime();
+        task.run();
+        metrics.record(start - enqueueTime, System.nanoTime() - start, getQueueSize());
+    }
+
+    private long enqueueTime(){
+        return metrics != null ? System.nanoTime() : 0;
+    }
+
+    private boolean isQueueEmpty(){
+        for(TaskQueue lane : lanes){
+            if(!lane.isEmpty()){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*-> First we tell execute() that we are going to wait, then we check the Queue one more time
+    * because a task may have been added after our poll() but before waiting was set, in that case
+    * execute() didn't unpark us and we would sleep with a task in the Queue.
+    *
+    * -> park() may also return without any reason(spurious wakeup), that's fine because run()
+    * will simply poll the Queue again and come back here if it is still empty.
+    *
+    * -> If some delayed task is waiting in the timer wheel then we only park till it is due.*/
+    private void awaitTask(){
+        waiting = true;
+        if(isQueueEmpty() && isAlive.get()){
+            long timeout = timers.nanosUntilNextTimeout(System.nanoTime());
+            if(timeout < 0){
+                LockSupport.park(this);
+            }
+            else if(timeout > 0){
+                LockSupport.parkNanos(this, timeout);
             }
         }
+        waiting = false;
     }
 
     //This method is used by any class to give the Runnables(tasks) to the Thread or for adding the tasks.
     public SimpleWorker execute(Runnable task){
-        queue.add(task);
+        return execute(task, Priority.NORMAL);
+    }
+
+    public SimpleWorker execute(Runnable task, Priority priority){
+        if(!tryExecute(task, priority)){
+            rejected();
+        }
         return this;
     }
 
+    //What a false from tryExecute() means for execute() and submit().
+    private void rejected(){
+        if(!isAlive.get()){
+            throw new RejectedExecutionException(TAG + " has quit");
+        }
+        if(overflowPolicy != OverflowPolicy.DROP){
+            throw new RejectedExecutionException(TAG + " queue is full");
+        }
+    }
+
+    //Same as execute() but tells if the task was added to the Queue instead of throwing.
+    public boolean tryExecute(Runnable task){
+        return tryExecute(task, Priority.NORMAL);
+    }
+
+    public boolean tryExecute(Runnable task, Priority priority){
+        if(!isAlive.get()){
+            return false;
+        }
+        TaskQueue queue = lanes[priority.ordinal()];
+        long enqueueTime = enqueueTime();
+        if(!queue.offer(task, enqueueTime) && !offerWhenFull(queue, task, enqueueTime)){
+            return false;
+        }
+        //quit() came in between and the loop Thread is already done with the Queues.
+        if(terminated && queue.remove(task)){
+            return false;
+        }
+        if(waiting){
+            LockSupport.unpark(loopThread);
+        }
+        return true;
+    }
+
+    /*Adds all the tasks but wakes the Thread only once at the end, instead of once for every
+    * task. Returns how many tasks were added, which is less than tasks.size() only if the Queue
+    * got full.*/
+    public int executeAll(List<? extends Runnable> tasks, Priority priority){
+        TaskQueue queue = lanes[priority.ordinal()];
+        long enqueueTime = enqueueTime();
+        int added = 0;
+        for(Runnable task : tasks){
+            if(!queue.offer(task, enqueueTime) && !offerWhenFull(queue, task, enqueueTime)){
+                break;
+            }
+            added++;
+        }
+        if(added > 0 && waiting){
+            LockSupport.unpark(loopThread);
+        }
+        return added;
+    }
+
+    /*-> For tasks where only the latest one matters, like "refresh the textView with the new
+    * value". If a task with the same key is still waiting in the Queue then it is replaced by
+    * this one and nothing new is added in the Queue, so 10 refreshes given before the worker
+    * got to them cost only one dispatch.
+    *
+    * -> The key is checked with equals(), so use something like a constant String or the View
+    * which will be updated.*/
+    public boolean executeCoalesced(Object key, Runnable task){
+        return executeCoalesced(key, task, Priority.NORMAL);
+    }
+
+    public boolean executeCoalesced(Object key, Runnable task, Priority priority){
+        if(coalesced.put(key, task) != null){
+            coalescedCount.incrementAndGet();
+            return true;
+        }
+        if(!tryExecute(new CoalescedTask(key), priority)){
+            coalesced.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean offerWhenFull(TaskQueue queue, Runnable task, long enqueueTime){
+        switch (overflowPolicy){
+            case BLOCK:
+                /*The SimpleWorker Thread itself can never wait for its own Queue, because it is the
+                * only one who can empty it, so for it BLOCK is same as REJECT.*/
+                if(Thread.currentThread() == loopThread){
+                    return false;
+                }
+                while (isAlive.get()){
+                    LockSupport.parkNanos(BLOCK_BACKOFF_NANOS);
+                    if(queue.offer(task, enqueueTime)){
+                        return true;
+                    }
+                }
+                return false;
+            case DROP:
+                droppedCount.incrementAndGet();
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /*Same as execute() but we get the result back, through WorkerFuture.get() or with a Callback
+    * on any Looper we want, and the task can be cancelled while it is still in the Queue.*/
+    public <T> WorkerFuture<T> submit(Callable<T> task){
+        return submit(task, Priority.NORMAL);
+    }
+
+    public <T> WorkerFuture<T> submit(Callable<T> task, Priority priority){
+        WorkerFuture<T> future = new WorkerFuture<>(this, task);
+        enqueue(future, priority);
+        return future;
+    }
+
+    /*If the task is still waiting in the Queue after timeoutMillis then it will not run at all and
+    * the future fails with TimeoutException.*/
+    public <T> WorkerFuture<T> submit(Callable<T> task, long timeoutMillis){
+        final WorkerFuture<T> future = new WorkerFuture<>(this, task);
+        future.setTimeout(executeDelayed(new Runnable() {
+            @Override
+            public void run() {
+                future.timeOut();
+            }
+        }, timeoutMillis));
+        enqueue(future, Priority.NORMAL);
+        return future;
+    }
+
+    /*A future which doesn't get in the Queue(full with DROP, or after quit()) is cancelled at
+    * once, otherwise get() would wait for it forever.*/
+    private void enqueue(WorkerFuture<?> future, Priority priority){
+        if(!tryExecute(future, priority)){
+            future.abandon();
+            rejected();
+        }
+    }
+
+    //Used by WorkerFuture.cancel(), so a cancelled task doesn't stay in the Queue.
+    boolean remove(Runnable task){
+        for(TaskQueue lane : lanes){
+            if(lane.remove(task)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*Run the task on this Thread after delayMillis, without blocking the Thread till then, other
+    * tasks keep running while this one is waiting in the timer wheel. The returned Timeout can
+    * be used to cancel() the task before it runs.*/
+    public HashedTimerWheel.Timeout executeDelayed(Runnable task, long delayMillis){
+        return schedule(task, delayMillis, 0);
+    }
+
+    /*Run the task first after initialDelayMillis and then every periodMillis(measured from the
+    * start of the previous run, not from its end) until the returned Timeout is cancelled.*/
+    public HashedTimerWheel.Timeout executeAtFixedRate(Runnable task, long initialDelayMillis, long periodMillis){
+        if(periodMillis <= 0){
+            throw new IllegalArgumentException("periodMillis must be positive, was " + periodMillis);
+        }
+        return schedule(task, initialDelayMillis, periodMillis);
+    }
+
+    private HashedTimerWheel.Timeout schedule(Runnable task, long delayMillis, long periodMillis){
+        HashedTimerWheel.Timeout timeout = timers.schedule(task, delayMillis, periodMillis);
+        //The Thread may be parked without any time limit, so wake it up to pick the new Timeout.
+        if(waiting){
+            LockSupport.unpark(loopThread);
+        }
+        return timeout;
+    }
+
     //This will stop the current Looper(While loop) so then run() method of the Thread will stop
-    //and also Thread will stop running.
+    //and also Thread will stop running. If the Thread is parked we have to wake it up so it can
+    //see that isAlive is false. The task which is running now finishes, everything still waiting
+    //is dropped and its WorkerFuture cancelled, see abandonPending().
     public void quit(){
         isAlive.set(false);
+        LockSupport.unpark(loopThread);
+    }
+
+    public boolean isBlocking(){
+        return blocking;
+    }
+
+    //Number of dispatches saved by executeCoalesced(), one for every waiting task replaced by a newer one.
+    public long getCoalescedCount(){
+        return coalescedCount.get();
+    }
+
+    //Number of tasks which the Thread has run, delayed tasks from the timer wheel are not counted.
+    public long getExecutedCount(){
+        return executedCount;
+    }
+
+    //The Thread which runs the tasks, this SimpleWorker or a virtual Thread.
+    public Thread getLoopThread(){
+        return loopThread;
+    }
+
+    public boolean runsOnVirtualThread(){
+        return loopThread != this;
+    }
+
+    /*Thread.ofVirtual().name(name).unstarted(task) through reflection, because the app is
+    * compiled against the Android SDK which doesn't have it. Returns null if not available.*/
+    private static Thread newVirtualThread(Thread task){
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class).invoke(builder, task.getName());
+            return (Thread) builderClass.getMethod("unstarted", Runnable.class).invoke(builder, task);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    //null if the SimpleWorker was not built with Builder.metrics(true).
+    public WorkerMetrics.Snapshot getMetricsSnapshot(){
+        return metrics != null ? metrics.snapshot(getQueueSize()) : null;
+    }
+
+    //Number of tasks which were thrown away because the Queue was full and policy is DROP.
+    public long getDroppedCount(){
+        return droppedCount.get();
+    }
+
+    public int getQueueSize(){
+        int size = 0;
+        for(TaskQueue lane : lanes){
+            size += lane.size();
+        }
+        return size;
+    }
+
+    //What goes in the Queue for executeCoalesced(), it runs whichever task is the latest for its key.
+    private final class CoalescedTask implements Runnable {
+
+        private final Object key;
+
+        CoalescedTask(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            Runnable latest = coalesced.remove(key);
+            if(latest != null){
+                latest.run();
+            }
+        }
+    }
+
+    /*-> Used when we want something other than the default SimpleWorker, like:
+    *
+    *       SimpleWorker worker = new SimpleWorker.Builder()
+    *               .boundedQueue(1024, SimpleWorker.OverflowPolicy.BLOCK)
+    *               .build();
+    *
+    * -> boundedQueue() uses RingBufferTaskQueue, which is allocated once with the given capacity,
+    * instead of the LinkedTaskQueue which allocates for every task and has no limit. Every
+    * Priority lane gets its own Queue of this capacity.*/
+    public static class Builder {
+
+        private boolean blocking = true;
+        private int capacity;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private int batchSize = 1;
+        private boolean metrics;
+        private long metricsLogIntervalMillis;
+        private boolean preferVirtualThread;
+
+        public Builder blocking(boolean blocking){
+            this.blocking = blocking;
+            return this;
+        }
+
+        //capacity must be a power of two.
+        public Builder boundedQueue(int capacity, OverflowPolicy overflowPolicy){
+            if(capacity < 2 || Integer.bitCount(capacity) != 1){
+                throw new IllegalArgumentException("capacity must be a power of two, was " + capacity);
+            }
+            this.capacity = capacity;
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        //How many tasks to run after each wake up before checking the timers and quit() again.
+        public Builder batchSize(int batchSize){
+            if(batchSize < 1){
+                throw new IllegalArgumentException("batchSize must be at least 1, was " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        //Record queue wait, run time and queue depth of every task, see getMetricsSnapshot().
+        public Builder metrics(boolean enabled){
+            this.metrics = enabled;
+            return this;
+        }
+
+        //Also turns on metrics and writes a snapshot to Logcat every intervalMillis.
+        public Builder logMetrics(long intervalMillis){
+            this.metrics = intervalMillis > 0 || metrics;
+            this.metricsLogIntervalMillis = intervalMillis;
+            return this;
+        }
+
+        //Run the loop on a virtual Thread if the runtime has them(JVM 21+), otherwise on this Thread.
+        public Builder preferVirtualThread(boolean prefer){
+            this.preferVirtualThread = prefer;
+            return this;
+        }
+
+        //Same as the Constructor, the Thread is already started when this returns.
+        public SimpleWorker build(){
+            return new SimpleWorker(this);
+        }
     }
 }
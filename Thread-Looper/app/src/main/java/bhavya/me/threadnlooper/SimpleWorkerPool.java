@@ -0,0 +1,176 @@
+package bhavya.me.threadnlooper;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class SimpleWorkerPool {
+
+    /*SimpleWorker is only one Thread, so every task we give to execute() will run one by one and
+    * we can never use more than one core of the CPU. This Pool has the same idea(while loop and
+    * a Queue) but with N Threads, and every Thread has its own Queue.
+    *
+    * -> Why every Thread has its own Queue? If all the Threads polled one shared Queue then all
+    * of them fight for the head of that Queue on every task. With one Queue(Deque) per Thread
+    * a Thread mostly touches only its own Deque.
+    *
+    * -> Work Stealing: If a Thread has nothing in its own Deque, before going to sleep(park) it
+    * looks into the Deques of the other Threads and steals a task from the other end(tail) of
+    * their Deque. So if one Thread got a long task, the tasks queued behind it are picked up by
+    * the free Threads instead of waiting.
+    *
+    * -> Keyed tasks: Tasks given with execute(key, task) always go to the same Thread(decided by
+    * the hashCode() of the key) and into a separate Queue which is never stolen, so the tasks
+    * with the same key run one by one in the same order they were given(FIFO per key), while
+    * tasks with different keys still run in parallel.
+    *
+    * Like SimpleWorker the Threads are started in the constructor.*/
+
+    private static final String TAG = "SimpleWorkerPool";
+
+    private final Worker[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final AtomicBoolean isAlive = new AtomicBoolean(true);
+
+    public SimpleWorkerPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public SimpleWorkerPool(int size) {
+        if(size < 1){
+            throw new IllegalArgumentException("size must be at least 1, was " + size);
+        }
+        workers = new Worker[size];
+        for(int i = 0; i < size; i++){
+            workers[i] = new Worker(i);
+        }
+        for(Worker worker : workers){
+            worker.start();
+        }
+    }
+
+    /*Tasks without key are given to the Threads one after another(round robin), if the Thread
+    * which got the task is busy then one sleeping Thread is woken up so that it can steal it.*/
+    public SimpleWorkerPool execute(Runnable task){
+        Worker worker = workers[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % workers.length];
+        worker.deque.offerLast(task);
+        if(!worker.wakeUp()){
+            wakeUpIdleWorker();
+        }
+        return this;
+    }
+
+    //Tasks with the same key will always run in the same order as they were given.
+    public SimpleWorkerPool execute(Object key, Runnable task){
+        Worker worker = workers[(spread(key.hashCode()) & Integer.MAX_VALUE) % workers.length];
+        worker.pinned.offer(task);
+        worker.wakeUp();
+        return this;
+    }
+
+    //Stop all the Threads, tasks which are still in the Queues will not run.
+    public void quit(){
+        isAlive.set(false);
+        for(Worker worker : workers){
+            LockSupport.unpark(worker);
+        }
+    }
+
+    public int size(){
+        return workers.length;
+    }
+
+    private void wakeUpIdleWorker(){
+        for(Worker worker : workers){
+            if(worker.wakeUp()){
+                return;
+            }
+        }
+    }
+
+    //Same as HashMap does, so that keys which only differ in high bits don't land on one Thread.
+    private static int spread(int hash){
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean hasWork(){
+        for(Worker worker : workers){
+            if(!worker.deque.isEmpty()){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class Worker extends Thread {
+
+        //Tasks without key, the owner Thread takes from the head and others steal from the tail.
+        final ConcurrentLinkedDeque<Runnable> deque = new ConcurrentLinkedDeque<>();
+        //Tasks with key, only the owner Thread takes from here so the order is never changed.
+        final ConcurrentLinkedQueue<Runnable> pinned = new ConcurrentLinkedQueue<>();
+
+        private volatile boolean waiting;
+
+        Worker(int index) {
+            super(TAG + "-" + index);
+        }
+
+        @Override
+        public void run() {
+            while (isAlive.get()){
+                Runnable task = pinned.poll();
+                if(task == null){
+                    task = deque.pollFirst();
+                }
+                if(task == null){
+                    task = steal();
+                }
+                if(task != null){
+                    task.run();
+                }
+                else {
+                    awaitTask();
+                }
+            }
+        }
+
+        //Start from a random Thread, so that all the free Threads don't steal from the same one.
+        private Runnable steal(){
+            int count = workers.length;
+            int start = ThreadLocalRandom.current().nextInt(count);
+            for(int i = 0; i < count; i++){
+                Worker victim = workers[(start + i) % count];
+                if(victim != this){
+                    Runnable task = victim.deque.pollLast();
+                    if(task != null){
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /*Same as SimpleWorker.awaitTask(), we check one more time after waiting is set, so a task
+        * added just before will not be missed. Here we also check the other Deques because we can
+        * steal from them.*/
+        private void awaitTask(){
+            waiting = true;
+            if(pinned.isEmpty() && !hasWork() && isAlive.get()){
+                LockSupport.park(this);
+            }
+            waiting = false;
+        }
+
+        //Returns true if this Thread was sleeping and has been woken up.
+        boolean wakeUp(){
+            if(waiting){
+                LockSupport.unpark(this);
+                return true;
+            }
+            return false;
+        }
+    }
+}
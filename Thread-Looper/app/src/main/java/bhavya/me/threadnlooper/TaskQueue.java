@@ -0,0 +1,25 @@
+package bhavya.me.threadnlooper;
+
+/*The Queue which SimpleWorker uses for its tasks. Any number of Threads can offer() tasks but
+* only the SimpleWorker Thread itself will poll() them, so an implementation only has to be safe
+* for many producers and one consumer.*/
+public interface TaskQueue {
+
+    /*Returns false if the Queue is full and the task was not added. enqueueTime is kept with the
+    * task so the SimpleWorker can measure how long it waited, it is 0 when metrics are off.*/
+    boolean offer(Runnable task, long enqueueTime);
+
+    //Returns null if the Queue is empty, only called by the SimpleWorker Thread.
+    Runnable poll();
+
+    //The enqueueTime of the task which was returned by the last poll().
+    long lastEnqueueTime();
+
+    /*Removes a task which is still waiting in the Queue, returns false if the task is not there
+    * or if the Queue can't remove from the middle.*/
+    boolean remove(Runnable task);
+
+    boolean isEmpty();
+
+    int size();
+}
@@ -0,0 +1,233 @@
+package bhavya.me.threadnlooper;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+public class WorkerFuture<T> extends LinkedTaskQueue.Node implements Runnable, Future<T> {
+
+    /*This is what SimpleWorker.submit() returns. Before this, to get a result back from the
+    * SimpleWorker we had to make a Message and send it to the Handler of the Main Thread by
+    * ourselves, now we can just add a Callback and tell on which Looper it should be called.
+    *
+    * -> This object is itself the Runnable which goes in the Queue of the SimpleWorker, and in the
+    * default LinkedTaskQueue it is also the node of the list. So a submit() allocates only this
+    * object(plus the Callable we give), no extra wrapper and no extra node. A bounded
+    * SimpleWorker(RingBufferTaskQueue) has its slots already, it doesn't need nodes at all.
+    *
+    * -> State is changed only with compareAndSet(), so if cancel() and run() happen at the same
+    * time only one of them wins:
+    *       NEW -> RUNNING -> DONE/FAILED
+    *       NEW -> COMPLETING -> CANCELLED
+    *       NEW -> COMPLETING -> FAILED(TimeoutException, if it was not even started before the timeout)
+    *
+    * -> COMPLETING(and RUNNING) means the winner is decided but outcome is not written yet. The
+    * final state is only set after outcome, so whoever sees DONE, FAILED or CANCELLED(get(), a
+    * Callback) also sees the outcome that goes with it, and never a null.*/
+
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int COMPLETING = 2;
+    private static final int DONE = 3;
+    private static final int FAILED = 4;
+    private static final int CANCELLED = 5;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<WorkerFuture> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(WorkerFuture.class, "state");
+
+    //Both onResult() and onError() are called on the Looper given in addCallback().
+    public interface Callback<T> {
+        void onResult(T result);
+
+        //Also called with CancellationException or TimeoutException.
+        void onError(Throwable error);
+    }
+
+    private final SimpleWorker worker;
+    private Callable<T> callable;
+    private volatile int state = NEW;
+    private Object outcome;
+    private HashedTimerWheel.Timeout timeout;
+
+    //Only touched inside synchronized(this).
+    private CallbackNode<T> callbacks;
+
+    WorkerFuture(SimpleWorker worker, Callable<T> callable) {
+        this.worker = worker;
+        this.callable = callable;
+    }
+
+    //Called by the SimpleWorker Thread.
+    @Override
+    public void run() {
+        if(!STATE.compareAndSet(this, NEW, RUNNING)){
+            return;
+        }
+        try {
+            set(DONE, callable.call());
+        } catch (Throwable t) {
+            set(FAILED, t);
+        }
+    }
+
+    /*Removes the task from the Queue if it is still waiting there. A task which is already running
+    * can't be stopped, because interrupting would also interrupt the SimpleWorker Thread.*/
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if(!STATE.compareAndSet(this, NEW, COMPLETING)){
+            return false;
+        }
+        worker.remove(this);
+        set(CANCELLED, new CancellationException());
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state >= DONE;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        synchronized (this){
+            while (state < DONE){
+                wait();
+            }
+        }
+        return report();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        synchronized (this){
+            while (state < DONE){
+                if(remaining <= 0){
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        }
+        return report();
+    }
+
+    /*Callback will be posted to the given Looper, like Looper.getMainLooper() if we want to touch
+    * the Views. If looper is null then it is called on the Thread which completed the task. If the
+    * task is already completed the Callback is posted right away.*/
+    public WorkerFuture<T> addCallback(Callback<T> callback, Looper looper){
+        CallbackNode<T> node = new CallbackNode<>(this, callback, looper == null ? null : new Handler(looper));
+        synchronized (this){
+            if(state < DONE){
+                node.next = callbacks;
+                callbacks = node;
+                return this;
+            }
+        }
+        node.deliver();
+        return this;
+    }
+
+    //Used by SimpleWorker.submit(task, timeoutMillis).
+    void setTimeout(HashedTimerWheel.Timeout timeout){
+        this.timeout = timeout;
+    }
+
+    //Called when the task will never run(the SimpleWorker quit), only if it didn't start yet.
+    void abandon(){
+        if(STATE.compareAndSet(this, NEW, COMPLETING)){
+            set(CANCELLED, new CancellationException(SimpleWorker.class.getSimpleName() + " has quit"));
+        }
+    }
+
+    //Called by the timer wheel, fails the future only if the task didn't start yet.
+    void timeOut(){
+        if(STATE.compareAndSet(this, NEW, COMPLETING)){
+            worker.remove(this);
+            set(FAILED, new TimeoutException());
+        }
+    }
+
+    private void set(int finalState, Object result){
+        CallbackNode<T> node;
+        synchronized (this){
+            //outcome first: state is volatile, so reading the final state also makes outcome visible.
+            outcome = result;
+            state = finalState;
+            //The Callable is not needed anymore, don't keep what it references alive.
+            callable = null;
+            node = callbacks;
+            callbacks = null;
+            notifyAll();
+        }
+        if(timeout != null){
+            timeout.cancel();
+        }
+        while (node != null){
+            node.deliver();
+            node = node.next;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T report() throws ExecutionException {
+        int finalState = state;
+        Object result = outcome;
+        switch (finalState){
+            case DONE:
+                return (T) result;
+            case CANCELLED:
+                throw (CancellationException) result;
+            default:
+                throw new ExecutionException((Throwable) result);
+        }
+    }
+
+    private static final class CallbackNode<T> implements Runnable {
+
+        private final WorkerFuture<T> future;
+        private final Callback<T> callback;
+        private final Handler handler;
+        private CallbackNode<T> next;
+
+        CallbackNode(WorkerFuture<T> future, Callback<T> callback, Handler handler) {
+            this.future = future;
+            this.callback = callback;
+            this.handler = handler;
+        }
+
+        void deliver(){
+            if(handler == null){
+                run();
+            }
+            else {
+                handler.post(this);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            if(future.state == DONE){
+                callback.onResult((T) future.outcome);
+            }
+            else {
+                callback.onError((Throwable) future.outcome);
+            }
+        }
+    }
+}
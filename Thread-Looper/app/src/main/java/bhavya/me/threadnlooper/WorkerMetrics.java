@@ -0,0 +1,88 @@
+package bhavya.me.threadnlooper;
+
+import java.util.concurrent.TimeUnit;
+
+public class WorkerMetrics {
+
+    /*Numbers about a SimpleWorker, only collected when it is made with Builder.metrics(true).
+    *
+    * -> queueWait: how long a task waited in the Queue, from execute() till the Thread took it.
+    * -> runTime: how long the run() of the task took.
+    * -> queue depth: how many tasks were waiting, the current value and the highest value seen.
+    *
+    * The SimpleWorker Thread records into this after every task without allocating anything,
+    * and any Thread can call snapshot() to get a copy of the numbers at that moment.
+    *
+    * NOTE: Delayed tasks(executeDelayed()) are run by the timer wheel and are not counted here.*/
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+    private volatile int maxQueueDepth;
+
+    //Used only inside snapshot() to calculate tasks per second since the previous snapshot.
+    private long lastSnapshotTime = System.nanoTime();
+    private long lastSnapshotCount;
+
+    //Only called by the SimpleWorker Thread.
+    void record(long queueWaitNanos, long runNanos, int queueDepth){
+        queueWait.record(queueWaitNanos);
+        runTime.record(runNanos);
+        if(queueDepth > maxQueueDepth){
+            maxQueueDepth = queueDepth;
+        }
+    }
+
+    public synchronized Snapshot snapshot(int queueDepth){
+        long now = System.nanoTime();
+        long count = runTime.getTotalCount();
+        double seconds = (now - lastSnapshotTime) / (double) TimeUnit.SECONDS.toNanos(1);
+        double tasksPerSecond = seconds > 0 ? (count - lastSnapshotCount) / seconds : 0;
+        lastSnapshotTime = now;
+        lastSnapshotCount = count;
+        return new Snapshot(count, tasksPerSecond, queueDepth, maxQueueDepth, queueWait, runTime);
+    }
+
+    //All durations are in nanoSeconds.
+    public static final class Snapshot {
+
+        public final long taskCount;
+        public final double tasksPerSecond;
+        public final int queueDepth;
+        public final int maxQueueDepth;
+
+        public final long queueWaitP50;
+        public final long queueWaitP99;
+        public final long queueWaitMax;
+
+        public final long runTimeP50;
+        public final long runTimeP99;
+        public final long runTimeMax;
+
+        Snapshot(long taskCount, double tasksPerSecond, int queueDepth, int maxQueueDepth,
+                 LatencyHistogram queueWait, LatencyHistogram runTime) {
+            this.taskCount = taskCount;
+            this.tasksPerSecond = tasksPerSecond;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.queueWaitP50 = queueWait.getValueAtPercentile(50);
+            this.queueWaitP99 = queueWait.getValueAtPercentile(99);
+            this.queueWaitMax = queueWait.getMaxValue();
+            this.runTimeP50 = runTime.getValueAtPercentile(50);
+            this.runTimeP99 = runTime.getValueAtPercentile(99);
+            this.runTimeMax = runTime.getMaxValue();
+        }
+
+        @Override
+        public String toString() {
+            return "tasks=" + taskCount
+                    + " tasks/s=" + Math.round(tasksPerSecond)
+                    + " depth=" + queueDepth + "(max " + maxQueueDepth + ")"
+                    + " wait p50/p99/max=" + micros(queueWaitP50) + "/" + micros(queueWaitP99) + "/" + micros(queueWaitMax) + "us"
+                    + " run p50/p99/max=" + micros(runTimeP50) + "/" + micros(runTimeP99) + "/" + micros(runTimeMax) + "us";
+        }
+
+        private static long micros(long nanos){
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package bhavya.me.threadnlooper;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*The wheel is driven here by hand with expireTimeouts(now), so "now" can jump ahead without
+* waiting. schedule() still takes the real System.nanoTime() for the deadline, that's why every
+* now is System.nanoTime() plus some offset.*/
+public class HashedTimerWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    private final HashedTimerWheel wheel = new HashedTimerWheel(TICK_MILLIS, 512);
+
+    @Test
+    public void delayedTaskRunsAfterItsDelayAndNotBefore() {
+        Counter task = new Counter();
+        long scheduledAt = System.nanoTime();
+        HashedTimerWheel.Timeout timeout = wheel.schedule(task, 100, 0);
+
+        wheel.expireTimeouts(scheduledAt + millis(50));
+        assertEquals(0, task.runs.get());
+
+        //At most one tick late.
+        wheel.expireTimeouts(scheduledAt + millis(100 + 2 * TICK_MILLIS));
+        assertEquals(1, task.runs.get());
+        assertTrue(timeout.isExpired());
+        assertFalse(wheel.hasTimeouts());
+    }
+
+    @Test
+    public void delayLongerThanOneTurnWaitsForItsRound() {
+        Counter task = new Counter();
+        long scheduledAt = System.nanoTime();
+        //One turn is 512 * 10 ms = 5.12 s.
+        wheel.schedule(task, 12000, 0);
+
+        wheel.expireTimeouts(scheduledAt + millis(6000));
+        wheel.expireTimeouts(scheduledAt + millis(11000));
+        assertEquals(0, task.runs.get());
+
+        wheel.expireTimeouts(scheduledAt + millis(12000 + 2 * TICK_MILLIS));
+        assertEquals(1, task.runs.get());
+    }
+
+    @Test
+    public void cancelledTaskNeverRuns() {
+        Counter task = new Counter();
+        long scheduledAt = System.nanoTime();
+        HashedTimerWheel.Timeout timeout = wheel.schedule(task, 50, 0);
+        //Once before it is in a bucket and once after.
+        HashedTimerWheel.Timeout placed = wheel.schedule(task, 50, 0);
+        assertTrue(timeout.cancel());
+        wheel.expireTimeouts(scheduledAt + millis(10));
+        assertTrue(placed.cancel());
+        assertFalse(placed.cancel());
+
+        wheel.expireTimeouts(scheduledAt + millis(1000));
+        assertEquals(0, task.runs.get());
+        assertTrue(timeout.isCancelled());
+        assertFalse(wheel.hasTimeouts());
+    }
+
+    @Test
+    public void fixedRateTaskRunsEveryPeriodTillCancelled() {
+        Counter task = new Counter();
+        long scheduledAt = System.nanoTime();
+        HashedTimerWheel.Timeout timeout = wheel.schedule(task, 100, 100);
+
+        for(long t = 0; t <= 1000; t += TICK_MILLIS){
+            wheel.expireTimeouts(scheduledAt + millis(t));
+        }
+        //Runs at 100, 200 ... 900 ms, the one at 1000 ms is only due after that tick is over.
+        assertTrue("ran " + task.runs.get() + " times", task.runs.get() >= 9 && task.runs.get() <= 10);
+
+        int runs = task.runs.get();
+        timeout.cancel();
+        wheel.expireTimeouts(scheduledAt + millis(3000));
+        assertEquals(runs, task.runs.get());
+    }
+
+    @Test
+    public void thousandsOfTimeoutsAllRunOnce() {
+        Counter task = new Counter();
+        long scheduledAt = System.nanoTime();
+        for(int i = 0; i < 10000; i++){
+            wheel.schedule(task, i * 2, 0);
+        }
+        //Like SimpleWorker, which takes new Timeouts into the wheel as soon as they come.
+        wheel.expireTimeouts(scheduledAt);
+        wheel.expireTimeouts(scheduledAt + millis(25000));
+        assertEquals(10000, task.runs.get());
+        assertFalse(wheel.hasTimeouts());
+    }
+
+    /*The wheel was empty for a year and then gets one Timeout: the hand has to jump to now
+    * instead of walking the 3 billion ticks of the idle time, which takes seconds.*/
+    @Test(timeout = 2000)
+    public void firstTimeoutAfterLongIdleDoesNotWalkTheIdleTicks() {
+        Counter task = new Counter();
+        long later = System.nanoTime() + TimeUnit.DAYS.toNanos(365);
+        wheel.schedule(task, 0, 0, later);
+
+        wheel.expireTimeouts(later);
+        wheel.expireTimeouts(later + millis(2 * TICK_MILLIS));
+        assertEquals(1, task.runs.get());
+        assertFalse(wheel.hasTimeouts());
+    }
+
+    //Like a SimpleWorker which was busy with a 200 ms task when the Timeout was due.
+    @Test
+    public void overdueTimeoutOnIdleWheelExpiresAtOnce() {
+        Counter task = new Counter();
+        long scheduledAt = System.nanoTime() + TimeUnit.HOURS.toNanos(1);
+        wheel.schedule(task, 50, 0, scheduledAt);
+
+        wheel.expireTimeouts(scheduledAt + millis(200));
+        assertEquals(1, task.runs.get());
+    }
+
+    @Test
+    public void emptyWheelLetsTheThreadSleepUntilWokenUp() {
+        assertEquals(-1, wheel.nanosUntilNextTimeout(System.nanoTime()));
+        wheel.schedule(new Counter(), 1000, 0);
+        //Still pending(not in a bucket yet), so the worker must not sleep before it placed it.
+        assertEquals(0, wheel.nanosUntilNextTimeout(System.nanoTime()));
+    }
+
+    private static long millis(long millis){
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static final class Counter implements Runnable {
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        @Override
+        public void run() {
+            runs.incrementAndGet();
+        }
+    }
+}
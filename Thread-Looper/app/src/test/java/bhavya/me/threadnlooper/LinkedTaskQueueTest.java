@@ -0,0 +1,150 @@
+package bhavya.me.threadnlooper;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LinkedTaskQueueTest {
+
+    @Test
+    public void pollsInOfferOrderWithEnqueueTime() {
+        LinkedTaskQueue queue = new LinkedTaskQueue();
+        assertTrue(queue.isEmpty());
+        Runnable[] tasks = new Runnable[10];
+        for(int i = 0; i < tasks.length; i++){
+            tasks[i] = new Task();
+            assertTrue(queue.offer(tasks[i], 100 + i));
+        }
+        assertEquals(10, queue.size());
+        for(int i = 0; i < tasks.length; i++){
+            assertSame(tasks[i], queue.poll());
+            assertEquals(100 + i, queue.lastEnqueueTime());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void removedTaskIsSkippedByPoll() {
+        LinkedTaskQueue queue = new LinkedTaskQueue();
+        Runnable first = new Task();
+        Runnable middle = new Task();
+        Runnable last = new Task();
+        queue.offer(first, 1);
+        queue.offer(middle, 2);
+        queue.offer(last, 3);
+
+        assertTrue(queue.remove(middle));
+        assertFalse(queue.remove(middle));
+        assertEquals(2, queue.size());
+        assertSame(first, queue.poll());
+        assertSame(last, queue.poll());
+        assertEquals(3, queue.lastEnqueueTime());
+        assertNull(queue.poll());
+
+        //Removing the last one leaves its node behind, the Queue must still end up empty.
+        queue.offer(first, 4);
+        assertTrue(queue.remove(first));
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    /*A WorkerFuture is linked in as its own node. Offered again(while it is still in the list, or
+    * after) it gets a normal Node, so the list is never broken and every offer is polled once.*/
+    @Test
+    public void workerFutureIsItsOwnNodeOnlyOnce() {
+        LinkedTaskQueue queue = new LinkedTaskQueue();
+        WorkerFuture<String> future = new WorkerFuture<>(null, null);
+        Runnable plain = new Task();
+        queue.offer(future, 1);
+        queue.offer(plain, 2);
+        queue.offer(future, 3);
+        assertEquals(3, queue.size());
+
+        assertSame(future, queue.poll());
+        assertEquals(1, queue.lastEnqueueTime());
+        assertSame(plain, queue.poll());
+        assertSame(future, queue.poll());
+        assertEquals(3, queue.lastEnqueueTime());
+        assertNull(queue.poll());
+
+        WorkerFuture<String> removed = new WorkerFuture<>(null, null);
+        queue.offer(removed, 4);
+        queue.offer(plain, 5);
+        assertTrue(queue.remove(removed));
+        assertSame(plain, queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void manyProducersOneConsumer() throws Exception {
+        TaskQueueStress.run(new LinkedTaskQueue(), 4, 200000);
+    }
+
+    /*WorkerFuture.cancel() removes from other Threads while the SimpleWorker polls: every task
+    * must either be removed or polled, never both and never lost.*/
+    @Test(timeout = 30000)
+    public void removeRacingWithPollTakesEveryTaskOnce() throws Exception {
+        final int count = 100000;
+        final LinkedTaskQueue queue = new LinkedTaskQueue();
+        final Task[] tasks = new Task[count];
+        for(int i = 0; i < count; i++){
+            tasks[i] = new Task();
+            queue.offer(tasks[i], i);
+        }
+        final AtomicInteger removed = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread remover = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                //From the back, so it meets the consumer somewhere in the middle.
+                for(int i = count - 1; i >= 0; i -= 2){
+                    if(queue.remove(tasks[i])){
+                        tasks[i].taken.incrementAndGet();
+                        removed.incrementAndGet();
+                    }
+                }
+            }
+        });
+        remover.start();
+        start.countDown();
+        int polled = 0;
+        Runnable task;
+        while (remover.isAlive() || !queue.isEmpty()){
+            if((task = queue.poll()) != null){
+                ((Task) task).taken.incrementAndGet();
+                polled++;
+            }
+        }
+        remover.join();
+        while ((task = queue.poll()) != null){
+            ((Task) task).taken.incrementAndGet();
+            polled++;
+        }
+
+        assertEquals(count, polled + removed.get());
+        for(Task t : tasks){
+            assertEquals(1, t.taken.get());
+        }
+        assertEquals(0, queue.size());
+    }
+
+    private static final class Task implements Runnable {
+
+        final AtomicInteger taken = new AtomicInteger();
+
+        @Override
+        public void run() {
+        }
+    }
+}
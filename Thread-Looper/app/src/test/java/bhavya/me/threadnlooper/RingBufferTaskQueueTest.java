@@ -0,0 +1,63 @@
+package bhavya.me.threadnlooper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTaskQueueTest {
+
+    private static final Runnable TASK = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePowerOfTwo() {
+        new RingBufferTaskQueue(100);
+    }
+
+    @Test
+    public void pollsInOfferOrderAndRejectsWhenFull() {
+        RingBufferTaskQueue queue = new RingBufferTaskQueue(4);
+        Runnable[] tasks = new Runnable[4];
+        for(int i = 0; i < tasks.length; i++){
+            tasks[i] = new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+            assertTrue(queue.offer(tasks[i], i));
+        }
+        assertFalse(queue.offer(TASK, 0));
+        assertEquals(4, queue.size());
+
+        for(int i = 0; i < tasks.length; i++){
+            assertSame(tasks[i], queue.poll());
+            assertEquals(i, queue.lastEnqueueTime());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void slotsAreReusedAfterWrappingAround() {
+        RingBufferTaskQueue queue = new RingBufferTaskQueue(8);
+        for(int round = 0; round < 1000; round++){
+            for(int i = 0; i < 5; i++){
+                assertTrue(queue.offer(TASK, round * 5 + i));
+            }
+            for(int i = 0; i < 5; i++){
+                assertSame(TASK, queue.poll());
+                assertEquals(round * 5 + i, queue.lastEnqueueTime());
+            }
+        }
+        assertEquals(0, queue.size());
+    }
+
+    //On a small ring, so it is full most of the time and the producers fight for the last slots.
+    @Test(timeout = 30000)
+    public void manyProducersOneConsumer() throws Exception {
+        TaskQueueStress.run(new RingBufferTaskQueue(64), 4, 200000);
+    }
+}
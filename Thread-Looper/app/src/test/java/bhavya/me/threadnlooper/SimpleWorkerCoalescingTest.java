@@ -0,0 +1,79 @@
+package bhavya.me.threadnlooper;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*executeCoalesced() while the worker can't get to its Queue: the worker is parked inside a task
+* which waits for a latch, so every task with the same key is given before the first one could
+* run, and they must cost one dispatch.*/
+public class SimpleWorkerCoalescingTest {
+
+    private static final int TASKS = 100;
+
+    private final SimpleWorker worker = new SimpleWorker();
+
+    @After
+    public void quit() throws InterruptedException {
+        worker.quit();
+        worker.join();
+    }
+
+    @Test(timeout = 10000)
+    public void tasksWithSameKeyRunOnceAndTheRestAreCounted() throws Exception {
+        CountDownLatch release = blockWorker();
+        final AtomicInteger runs = new AtomicInteger();
+        final AtomicInteger lastRun = new AtomicInteger(-1);
+        for(int i = 0; i < TASKS; i++){
+            final int index = i;
+            assertTrue(worker.executeCoalesced("refresh", new Runnable() {
+                @Override
+                public void run() {
+                    runs.incrementAndGet();
+                    lastRun.set(index);
+                }
+            }));
+        }
+        assertEquals(TASKS - 1, worker.getCoalescedCount());
+
+        release.countDown();
+        //The worker runs tasks in order, so once this one ran the coalesced one did too.
+        final CountDownLatch drained = new CountDownLatch(1);
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                drained.countDown();
+            }
+        });
+        assertTrue(drained.await(1, TimeUnit.SECONDS));
+
+        assertEquals(1, runs.get());
+        //Only the latest task matters, that is the one which ran.
+        assertEquals(TASKS - 1, lastRun.get());
+        assertEquals(TASKS - 1, worker.getCoalescedCount());
+    }
+
+    //Keeps the worker parked inside a task till the returned latch is counted down.
+    private CountDownLatch blockWorker() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(blocked.await(1, TimeUnit.SECONDS));
+        return release;
+    }
+}
@@ -0,0 +1,131 @@
+package bhavya.me.threadnlooper;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*Priority lanes of SimpleWorker: IMMEDIATE tasks must not wait behind a flood of BULK tasks,
+* and BULK tasks must still make progress while higher lanes are busy.*/
+public class SimpleWorkerPriorityTest {
+
+    private static final int PROBES = 200;
+    //About 1 second of BULK work waiting in the Queue, 20 us per task.
+    private static final int FLOOD = 50000;
+    private static final long BULK_TASK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    private final SimpleWorker worker = new SimpleWorker();
+
+    @After
+    public void quit() throws InterruptedException {
+        worker.quit();
+        worker.join();
+    }
+
+    @Test(timeout = 30000)
+    public void immediateLatencyStaysFlatUnderBulkFlood() throws Exception {
+        long[] idle = probe(SimpleWorker.Priority.IMMEDIATE);
+
+        final AtomicInteger bulkRan = new AtomicInteger();
+        Runnable bulk = new Runnable() {
+            @Override
+            public void run() {
+                burn(BULK_TASK_NANOS);
+                bulkRan.incrementAndGet();
+            }
+        };
+        for(int i = 0; i < FLOOD; i++){
+            worker.execute(bulk, SimpleWorker.Priority.BULK);
+        }
+        long[] flooded = probe(SimpleWorker.Priority.IMMEDIATE);
+        int bulkDuringProbes = bulkRan.get();
+
+        System.out.println("IMMEDIATE p50/p99: idle " + micros(idle, 50) + "/" + micros(idle, 99)
+                + " us, under " + FLOOD + " BULK tasks " + micros(flooded, 50) + "/"
+                + micros(flooded, 99) + " us, BULK tasks run meanwhile: " + bulkDuringProbes);
+
+        //Without lanes every probe would wait behind up to a second of BULK work.
+        assertTrue("p99 under flood " + micros(flooded, 99) + " us",
+                micros(flooded, 99) < micros(idle, 99) + TimeUnit.MILLISECONDS.toMicros(5));
+        //And the flood itself was not stopped by the probes.
+        assertTrue(bulkDuringProbes > 0);
+    }
+
+    //Every STARVATION_INTERVAL(16) tasks the lowest lane goes first.
+    @Test(timeout = 10000)
+    public void bulkTaskRunsWhileImmediateLaneIsFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final AtomicInteger dispatched = new AtomicInteger();
+        final AtomicInteger bulkRanAt = new AtomicInteger(-1);
+        Runnable immediate = new Runnable() {
+            @Override
+            public void run() {
+                dispatched.incrementAndGet();
+            }
+        };
+        for(int i = 0; i < 1000; i++){
+            worker.execute(immediate, SimpleWorker.Priority.IMMEDIATE);
+        }
+        final CountDownLatch bulkRan = new CountDownLatch(1);
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                bulkRanAt.set(dispatched.get());
+                bulkRan.countDown();
+            }
+        }, SimpleWorker.Priority.BULK);
+        release.countDown();
+
+        assertTrue(bulkRan.await(5, TimeUnit.SECONDS));
+        assertTrue("BULK ran after " + bulkRanAt.get() + " IMMEDIATE tasks", bulkRanAt.get() <= 16);
+    }
+
+    //Latency from execute() till the task starts, for PROBES tasks given one by one.
+    private long[] probe(SimpleWorker.Priority priority) throws InterruptedException {
+        long[] latencies = new long[PROBES];
+        for(int i = 0; i < PROBES; i++){
+            final long[] startedAt = new long[1];
+            final CountDownLatch ran = new CountDownLatch(1);
+            long submittedAt = System.nanoTime();
+            worker.execute(new Runnable() {
+                @Override
+                public void run() {
+                    startedAt[0] = System.nanoTime();
+                    ran.countDown();
+                }
+            }, priority);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+            latencies[i] = startedAt[0] - submittedAt;
+            Thread.sleep(1);
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static long micros(long[] sorted, int percentile){
+        int index = Math.min(sorted.length - 1, sorted.length * percentile / 100);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[index]);
+    }
+
+    private static void burn(long nanos){
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end){
+            //Busy, like a real CPU bound task.
+        }
+    }
+}
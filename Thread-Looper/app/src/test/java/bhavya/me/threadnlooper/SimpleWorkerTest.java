@@ -0,0 +1,115 @@
+package bhavya.me.threadnlooper;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/*Compares the blocking(parking) SimpleWorker with the old spinning one on the JVM:
+*
+* -> Idle CPU: how much CPU time the worker Thread uses while there is nothing to do. A spinning
+* worker burns about one full core, a parked one should be close to 0.
+*
+* -> Wake up latency: how long from execute() till the task starts running, when the worker was
+* idle before. The parked worker has to be unparked first, so it is a little slower than the
+* spinning one, but it must still be well below a frame(16 ms).
+*
+* The numbers are printed, so a run of this test also shows how the two compare on the machine.*/
+public class SimpleWorkerTest {
+
+    private static final long IDLE_MILLIS = 500;
+    private static final int WAKE_UPS = 200;
+
+    @Test
+    public void parkedWorkerUsesAlmostNoCpuWhenIdle() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadCpuTimeSupported());
+        threads.setThreadCpuTimeEnabled(true);
+
+        long blockingNanos = idleCpuNanos(threads, new SimpleWorker(true));
+        long spinningNanos = idleCpuNanos(threads, new SimpleWorker(false));
+        System.out.println("Idle CPU in " + IDLE_MILLIS + " ms: blocking="
+                + TimeUnit.NANOSECONDS.toMillis(blockingNanos) + " ms, spinning="
+                + TimeUnit.NANOSECONDS.toMillis(spinningNanos) + " ms");
+
+        //Less than 5% of the idle time, the spinning one is close to 100% on a free core.
+        assertTrue("parked worker used " + blockingNanos + " ns of CPU",
+                blockingNanos < TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS) / 20);
+        assertTrue(spinningNanos > blockingNanos);
+    }
+
+    @Test
+    public void parkedWorkerWakesUpQuickly() throws Exception {
+        long[] blocking = wakeUpLatencies(new SimpleWorker(true));
+        long[] spinning = wakeUpLatencies(new SimpleWorker(false));
+        System.out.println("Wake up latency: blocking p50=" + percentileMicros(blocking, 50)
+                + " us p99=" + percentileMicros(blocking, 99) + " us, spinning p50="
+                + percentileMicros(spinning, 50) + " us p99=" + percentileMicros(spinning, 99) + " us");
+
+        assertTrue(percentileMicros(blocking, 50) < TimeUnit.MILLISECONDS.toMicros(2));
+        assertTrue(percentileMicros(blocking, 99) < TimeUnit.MILLISECONDS.toMicros(16));
+    }
+
+    @Test(timeout = 5000)
+    public void quitStopsParkedWorker() throws Exception {
+        SimpleWorker worker = new SimpleWorker(true);
+        //Give it time to find the empty Queue and park.
+        Thread.sleep(50);
+        worker.quit();
+        worker.join();
+        assertFalse(worker.isAlive());
+    }
+
+    private static long idleCpuNanos(ThreadMXBean threads, SimpleWorker worker) throws InterruptedException {
+        try {
+            //Let the Thread start and reach the empty Queue first.
+            Thread.sleep(50);
+            long before = threads.getThreadCpuTime(worker.getId());
+            Thread.sleep(IDLE_MILLIS);
+            return threads.getThreadCpuTime(worker.getId()) - before;
+        } finally {
+            worker.quit();
+            worker.join();
+        }
+    }
+
+    private static long[] wakeUpLatencies(SimpleWorker worker) throws InterruptedException {
+        long[] latencies = new long[WAKE_UPS];
+        final AtomicLong startedAt = new AtomicLong();
+        try {
+            for(int i = 0; i < WAKE_UPS; i++){
+                //Long enough for the worker to go back to park() before the next task.
+                Thread.sleep(2);
+                final CountDownLatch ran = new CountDownLatch(1);
+                long submittedAt = System.nanoTime();
+                worker.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        startedAt.set(System.nanoTime());
+                        ran.countDown();
+                    }
+                });
+                assertTrue(ran.await(1, TimeUnit.SECONDS));
+                latencies[i] = startedAt.get() - submittedAt;
+            }
+        } finally {
+            worker.quit();
+            worker.join();
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    //latencies must be sorted.
+    private static long percentileMicros(long[] latencies, int percentile){
+        int index = Math.min(latencies.length - 1, latencies.length * percentile / 100);
+        return TimeUnit.NANOSECONDS.toMicros(latencies[index]);
+    }
+}
@@ -0,0 +1,70 @@
+package bhavya.me.threadnlooper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/*Many producers and one consumer on a TaskQueue at the same time. The producer and its sequence
+* number go in enqueueTime, so the consumer can check that every task came exactly once and in
+* the order of its producer. Producers retry while the Queue is full, the consumer is the calling
+* Thread.*/
+final class TaskQueueStress {
+
+    private static final Runnable TASK = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private TaskQueueStress() {
+    }
+
+    static void run(final TaskQueue queue, int producers, final int perProducer) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for(int p = 0; p < producers; p++){
+            final long producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for(long i = 0; i < perProducer; i++){
+                        while (!queue.offer(TASK, (producer << 32) | i)){
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        long[] next = new long[producers];
+        long total = (long) producers * perProducer;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        start.countDown();
+        for(long received = 0; received < total; ){
+            Runnable task = queue.poll();
+            if(task == null){
+                assertTrue("consumer stuck after " + received + " tasks", System.nanoTime() < deadline);
+                Thread.yield();
+                continue;
+            }
+            assertSame(TASK, task);
+            int producer = (int) (queue.lastEnqueueTime() >>> 32);
+            long sequence = queue.lastEnqueueTime() & 0xFFFFFFFFL;
+            assertEquals("producer " + producer, next[producer], sequence);
+            next[producer]++;
+            received++;
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+    }
+}
@@ -0,0 +1,245 @@
+package bhavya.me.threadnlooper;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class WorkerFutureTest {
+
+    private final SimpleWorker worker = new SimpleWorker();
+
+    @After
+    public void quit() throws InterruptedException {
+        worker.quit();
+        worker.join();
+    }
+
+    @Test
+    public void getReturnsTheResult() throws Exception {
+        assertEquals("done", worker.submit(constant("done")).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void exceptionOfTheTaskComesInExecutionException() throws Exception {
+        final IllegalStateException error = new IllegalStateException();
+        WorkerFuture<String> future = worker.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                throw error;
+            }
+        });
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void cancelledTaskNeverRuns() throws Exception {
+        CountDownLatch release = blockWorker();
+        final AtomicInteger runs = new AtomicInteger();
+        WorkerFuture<String> future = worker.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                runs.incrementAndGet();
+                return "ran";
+            }
+        });
+
+        assertTrue(future.cancel(false));
+        assertFalse(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertTrue(future.isDone());
+        release.countDown();
+        worker.submit(constant("")).get(1, TimeUnit.SECONDS);
+        assertEquals(0, runs.get());
+        try {
+            future.get();
+            fail();
+        } catch (CancellationException expected) {
+        }
+    }
+
+    @Test
+    public void taskStillQueuedAfterTimeoutFailsWithTimeoutException() throws Exception {
+        worker.execute(sleep(200));
+        WorkerFuture<String> future = worker.submit(constant("late"), 50);
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    /*Tasks still waiting when the worker quits never run, so get() without a timeout would wait
+    * forever if they were just forgotten. They are cancelled, and the Callbacks get onError().*/
+    @Test(timeout = 10000)
+    public void getReturnsAfterQuit() throws Exception {
+        CountDownLatch release = blockWorker();
+        WorkerFuture<String> queued = worker.submit(constant("never"));
+        WorkerFuture<String> withTimeout = worker.submit(constant("never"), 60000);
+        final CountDownLatch errored = new CountDownLatch(1);
+        queued.addCallback(new WorkerFuture.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                if(error instanceof CancellationException){
+                    errored.countDown();
+                }
+            }
+        }, null);
+
+        worker.quit();
+        release.countDown();
+        for(WorkerFuture<?> future : Arrays.asList(queued, withTimeout)){
+            try {
+                future.get();
+                fail();
+            } catch (CancellationException expected) {
+                assertTrue(future.isCancelled());
+            }
+        }
+        assertTrue(errored.await(1, TimeUnit.SECONDS));
+
+        worker.join();
+        try {
+            worker.submit(constant("late"));
+            fail();
+        } catch (RejectedExecutionException expected) {
+            //A worker which has quit takes nothing anymore.
+        }
+    }
+
+    @Test
+    public void callbackWithoutLooperGetsResultOnWorkerThread() throws Exception {
+        final CountDownLatch called = new CountDownLatch(1);
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        worker.submit(constant("value")).addCallback(new WorkerFuture.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+                assertEquals("value", result);
+                thread.set(Thread.currentThread());
+                called.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+            }
+        }, null);
+        assertTrue(called.await(1, TimeUnit.SECONDS));
+        assertSame(worker, thread.get());
+    }
+
+    /*cancel() on one Thread while another one waits in get(): get() must always end with the
+    * CancellationException, never with a completed state whose outcome isn't written yet(that
+    * was a NullPointerException from "throw (CancellationException) null"). The Queue holds some
+    * tasks so cancel() spends a while in remove() between deciding and completing.*/
+    @Test(timeout = 60000)
+    public void getDuringCancelAlwaysSeesTheCancellation() throws Exception {
+        CountDownLatch release = blockWorker();
+        for(int i = 0; i < 64; i++){
+            worker.execute(sleep(0));
+        }
+        final AtomicReference<WorkerFuture<String>> current = new AtomicReference<>();
+        final AtomicInteger checked = new AtomicInteger();
+        final AtomicReference<Throwable> wrong = new AtomicReference<>();
+        final int rounds = 100000;
+        Thread getter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < rounds; i++){
+                    WorkerFuture<String> future;
+                    while ((future = current.get()) == null){
+                        Thread.yield();
+                    }
+                    while (!future.isDone()){
+                        //Spin, so get() comes right when the state changes.
+                    }
+                    try {
+                        future.get();
+                        wrong.compareAndSet(null, new AssertionError("cancelled future returned a value"));
+                    } catch (CancellationException expected) {
+                        //Good.
+                    } catch (Throwable t) {
+                        wrong.compareAndSet(null, t);
+                    }
+                    current.set(null);
+                    checked.incrementAndGet();
+                }
+            }
+        });
+        getter.start();
+        for(int i = 0; i < rounds; i++){
+            WorkerFuture<String> future = new WorkerFuture<>(worker, constant("never"));
+            current.set(future);
+            future.cancel(false);
+            while (checked.get() <= i){
+                Thread.yield();
+            }
+        }
+        getter.join();
+        release.countDown();
+        if(wrong.get() != null){
+            throw new AssertionError("get() failed during cancel()", wrong.get());
+        }
+    }
+
+    //Keeps the worker busy till the returned latch is counted down.
+    private CountDownLatch blockWorker() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(blocked.await(1, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static <T> Callable<T> constant(final T value){
+        return new Callable<T>() {
+            @Override
+            public T call() {
+                return value;
+            }
+        };
+    }
+
+    private static Runnable sleep(final long millis){
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+}
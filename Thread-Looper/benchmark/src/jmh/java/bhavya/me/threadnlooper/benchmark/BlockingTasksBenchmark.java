@@ -0,0 +1,119 @@
+package bhavya.me.threadnlooper.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import bhavya.me.threadnlooper.SimpleWorker;
+
+/*100,000 blocking tasks(every one sleeps 1 ms, like a small network or disk call) spread over
+* `workers` SimpleWorkers, with the loop on platform Threads and on virtual Threads.
+*
+* -> A SimpleWorker runs its tasks one by one, so the tasks of one worker never overlap in both
+* modes(same ordering). The difference is what the blocked workers cost: in platform mode every
+* worker is an OS Thread, in virtual mode a sleeping worker gives its carrier Thread back, so
+* many workers fit on a few carrier Threads.
+*
+* -> The score is the time for all 100,000 tasks, the workers are made before and quit after
+* every iteration(that is measured separately in startAndQuit()).
+*
+* NOTE: virtual needs Java 21+ in the JVM which runs the benchmarks(JMH_JVM, see build.gradle).
+* On an older JVM the setup fails for virtual instead of measuring platform Threads twice.*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class BlockingTasksBenchmark {
+
+    private static final int TASKS = 100000;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"100", "1000"})
+    public int workers;
+
+    private SimpleWorker[] pool;
+    private volatile CountDownLatch done;
+
+    private final Runnable blockingTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        }
+    };
+
+    @Setup(Level.Iteration)
+    public void start() {
+        pool = startWorkers();
+    }
+
+    @TearDown(Level.Iteration)
+    public void quit() throws InterruptedException {
+        quitWorkers(pool);
+    }
+
+    @Benchmark
+    public void blockingTasks() throws InterruptedException {
+        done = new CountDownLatch(TASKS);
+        for(int i = 0; i < TASKS; i++){
+            pool[i % workers].execute(blockingTask);
+        }
+        done.await();
+    }
+
+    //What it costs to make `workers` SimpleWorkers and stop them again, without any task.
+    @Benchmark
+    public void startAndQuit() throws InterruptedException {
+        quitWorkers(startWorkers());
+    }
+
+    private SimpleWorker[] startWorkers(){
+        boolean virtual = mode.equals("virtual");
+        SimpleWorker[] started = new SimpleWorker[workers];
+        for(int i = 0; i < workers; i++){
+            started[i] = new SimpleWorker.Builder().preferVirtualThread(virtual).build();
+            if(started[i].runsOnVirtualThread() != virtual){
+                quitWorkers(started);
+                throw new IllegalStateException("This JVM has no virtual Threads, run it on Java 21+");
+            }
+        }
+        return started;
+    }
+
+    private static void quitWorkers(SimpleWorker[] workers){
+        for(SimpleWorker worker : workers){
+            if(worker != null){
+                worker.quit();
+            }
+        }
+        for(SimpleWorker worker : workers){
+            if(worker != null){
+                try {
+                    worker.getLoopThread().join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package bhavya.me.threadnlooper.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+
+import bhavya.me.threadnlooper.SimpleWorker;
+import bhavya.me.threadnlooper.SimpleWorkerPool;
+
+/*CPU bound tasks per second on SimpleWorkerPool with 1, 2, 4 and 8 Threads, and on one
+* SimpleWorker for comparison.
+*
+* -> Every invocation gives BATCH tasks and waits till all of them ran, the score is tasks per
+* second. Every task burns about `work` tokens of CPU(Blackhole.consumeCPU()), so with a big
+* `work` the pool should scale with the number of cores till it runs out of them, and with a
+* tiny one we see the cost of the Queues and the wake ups instead.
+*
+* -> pool(1) against singleWorker() is the cost of the Deques and work stealing compared to the
+* Queue of SimpleWorker.
+*
+* NOTE: The numbers only mean something next to the number of cores of the machine, it is in the
+* JSON results(jvm and vm info) but not in the score.*/
+@State(Scope.Benchmark)
+public class PoolThroughputBenchmark {
+
+    private static final int BATCH = 10000;
+
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    @Param({"100", "10000"})
+    public long work;
+
+    private SimpleWorkerPool pool;
+    private SimpleWorker worker;
+    private Task task;
+
+    @Setup(Level.Trial)
+    public void start() {
+        pool = new SimpleWorkerPool(workers);
+        worker = new SimpleWorker();
+        task = new Task(work);
+    }
+
+    @TearDown(Level.Trial)
+    public void quit() throws InterruptedException {
+        pool.quit();
+        worker.quit();
+        worker.join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void pool() throws InterruptedException {
+        CountDownLatch done = task.reset(BATCH);
+        for(int i = 0; i < BATCH; i++){
+            pool.execute(task);
+        }
+        done.await();
+    }
+
+    //Doesn't depend on `workers`, it is measured for every value only so it is next to them in the results.
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void singleWorker() throws InterruptedException {
+        CountDownLatch done = task.reset(BATCH);
+        for(int i = 0; i < BATCH; i++){
+            worker.execute(task);
+        }
+        done.await();
+    }
+
+    //One object for all the tasks, so the benchmark doesn't measure allocating BATCH Runnables.
+    private static final class Task implements Runnable {
+
+        private final long work;
+        private volatile CountDownLatch done;
+
+        Task(long work) {
+            this.work = work;
+        }
+
+        CountDownLatch reset(int count){
+            done = new CountDownLatch(count);
+            return done;
+        }
+
+        @Override
+        public void run() {
+            Blackhole.consumeCPU(work);
+            done.countDown();
+        }
+    }
+}
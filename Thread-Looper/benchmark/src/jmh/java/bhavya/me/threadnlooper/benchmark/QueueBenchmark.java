@@ -0,0 +1,138 @@
+package bhavya.me.threadnlooper.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bhavya.me.threadnlooper.LinkedTaskQueue;
+import bhavya.me.threadnlooper.RingBufferTaskQueue;
+import bhavya.me.threadnlooper.TaskQueue;
+
+/*The task Queues of SimpleWorker against each other, ops/sec and allocation rate(the gc
+* profiler is on in build.gradle, look at gc.alloc.rate.norm: bytes per operation).
+*
+*       ring   -> RingBufferTaskQueue, what Builder.boundedQueue() uses. Should allocate 0 bytes.
+*       linked -> LinkedTaskQueue, the default Queue, one node per task.
+*       clq    -> ConcurrentLinkedQueue, what SimpleWorker used before both of them.
+*
+* -> offerPoll(): one Thread offers a task and polls it again, the cost without any contention.
+*
+* -> mpsc: 3 producer Threads offer() and one consumer Thread polls(), like the app's Threads
+* giving tasks to one SimpleWorker. The producers are faster than the consumer, so the two
+* unbounded Queues would grow till the JVM runs out of memory: for them offer() also returns
+* false once CAPACITY tasks are waiting, like the full ring does. Compare the poll score(tasks
+* which really went through) and not only the offer score.*/
+@State(Scope.Group)
+public class QueueBenchmark {
+
+    private static final int CAPACITY = 1024;
+
+    private static final Runnable TASK = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @Param({"ring", "linked", "clq"})
+    public String queue;
+
+    private TaskQueue taskQueue;
+    private boolean bounded;
+
+    @Setup(Level.Iteration)
+    public void create() {
+        bounded = queue.equals("ring");
+        switch (queue){
+            case "ring":
+                taskQueue = new RingBufferTaskQueue(CAPACITY);
+                break;
+            case "linked":
+                taskQueue = new LinkedTaskQueue();
+                break;
+            case "clq":
+                taskQueue = new ConcurrentLinkedTaskQueue();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown queue " + queue);
+        }
+    }
+
+    @Benchmark
+    public Runnable offerPoll() {
+        taskQueue.offer(TASK, 0);
+        return taskQueue.poll();
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(3)
+    public boolean offer() {
+        if(!bounded && taskQueue.size() >= CAPACITY){
+            return false;
+        }
+        return taskQueue.offer(TASK, 0);
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(1)
+    public Runnable poll() {
+        return taskQueue.poll();
+    }
+
+    /*The old Queue of SimpleWorker behind the TaskQueue interface, without metrics like it was
+    * then. ConcurrentLinkedQueue.size() walks the whole Queue, so the size is counted separately
+    * (same as LinkedTaskQueue does).*/
+    private static final class ConcurrentLinkedTaskQueue implements TaskQueue {
+
+        private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        @Override
+        public boolean offer(Runnable task, long enqueueTime) {
+            size.incrementAndGet();
+            return queue.offer(task);
+        }
+
+        @Override
+        public Runnable poll() {
+            Runnable task = queue.poll();
+            if(task != null){
+                size.decrementAndGet();
+            }
+            return task;
+        }
+
+        @Override
+        public long lastEnqueueTime() {
+            return 0;
+        }
+
+        @Override
+        public boolean remove(Runnable task) {
+            if(queue.remove(task)){
+                size.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            return Math.max(0, size.get());
+        }
+    }
+}